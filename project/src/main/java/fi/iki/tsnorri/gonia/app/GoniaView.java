@@ -14,7 +14,6 @@ import java.awt.geom.AffineTransform;
 import java.util.Collection;
 import java.util.Set;
 import fi.iki.tsnorri.gonia.logic.HexPoint;
-import fi.iki.tsnorri.gonia.logic.MutableHexPoint;
 import fi.iki.tsnorri.gonia.logic.Tetromino;
 import javax.swing.JPanel;
 
@@ -143,7 +142,6 @@ public class GoniaView extends JPanel
 
 		// Draw the tetrominoes.
 		graphics2D.translate(0.0, hexDim / 2.0);
-		MutableHexPoint point = new MutableHexPoint(0, 0, 0);
 		Tetromino currentTetromino = delegate.getCurrentTetromino();
 		Collection<? extends HexPoint> tetrominoPoints = null;
 		if (null != currentTetromino)
@@ -157,7 +155,7 @@ public class GoniaView extends JPanel
 			for (int j = 0; j < colCount; j++)
 			{
 				Color pointColor = null;
-				point.assignOffsets(j, rowCount - (1 + i));
+				HexPoint point = HexPoint.valueOfOffsets(j, rowCount - (1 + i));
 				if (null != tetrominoPoints && tetrominoPoints.contains(point))
 					graphics2D.setColor(currentTetromino.getColor());
 				else if (null != trajectoryPoints && trajectoryPoints.contains(point))
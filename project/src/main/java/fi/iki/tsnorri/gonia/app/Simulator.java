@@ -0,0 +1,522 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.app;
+
+import fi.iki.tsnorri.gonia.logic.AbstractGameBoard;
+import fi.iki.tsnorri.gonia.logic.GameBoard;
+import fi.iki.tsnorri.gonia.logic.GameController;
+import fi.iki.tsnorri.gonia.logic.HexPoint;
+import fi.iki.tsnorri.gonia.logic.Placement;
+import fi.iki.tsnorri.gonia.logic.PlacementEnumerator;
+import fi.iki.tsnorri.gonia.logic.RandomTetrominoSource;
+import fi.iki.tsnorri.gonia.logic.Tetromino;
+import fi.iki.tsnorri.gonia.logic.Trajectory;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Runs games without the user interface as fast as possible and reports
+ * the throughput.
+ *
+ * Usage: Simulator [--policy random|bot|script:KEYS] [--seed N] [--width N]
+ * [--height N] [--games N] [--max-steps N]
+ *
+ * The keys of a script are the ones used in GuiGameController; a dash
+ * skips a step. The script is repeated for as long as the game continues.
+ * Other implementations of InputPolicy may be passed to run.
+ *
+ * @author tsnorri
+ */
+public class Simulator
+{
+	/**
+	 * Decides the moves of the player.
+	 */
+	public interface InputPolicy
+	{
+		/**
+		 * Make the moves for the current step. Called after each step of the
+		 * game.
+		 *
+		 * @param gameController The game controller.
+		 * @return Boolean indicating whether the game continues.
+		 */
+		public boolean act(GameController gameController);
+	}
+
+
+	/**
+	 * Presses a random key on each step.
+	 */
+	static class RandomPolicy implements InputPolicy
+	{
+		// Doing nothing is more likely than dropping.
+		private static final String KEYS = "jkilm,. -----";
+		private Random random;
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param random The random number generator.
+		 */
+		public RandomPolicy(Random random)
+		{
+			this.random = random;
+		}
+
+
+		@Override
+		public boolean act(GameController gameController)
+		{
+			return handleKey(gameController, KEYS.charAt(this.random.nextInt(KEYS.length())));
+		}
+	}
+
+
+	/**
+	 * Presses the keys of a script in order.
+	 */
+	static class ScriptedPolicy implements InputPolicy
+	{
+		private String script;
+		private int idx;
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param script The keys.
+		 */
+		public ScriptedPolicy(String script)
+		{
+			if (0 == script.length())
+				throw new IllegalArgumentException("Empty script.");
+			this.script = script;
+		}
+
+
+		@Override
+		public boolean act(GameController gameController)
+		{
+			char key = this.script.charAt(this.idx);
+			this.idx = (1 + this.idx) % this.script.length();
+			return handleKey(gameController, key);
+		}
+	}
+
+
+	/**
+	 * Finds every placement of each new tetromino on each trajectory with
+	 * PlacementEnumerator, including those that need rotations or moves
+	 * under overhangs, and makes the moves to the best one. Placements that
+	 * remove more lines are preferred, then ones that are lower.
+	 */
+	static class BotPolicy implements InputPolicy
+	{
+		// One per trajectory type, so that each keeps the moves to its placements.
+		private PlacementEnumerator[] enumerators;
+		private GameController gameController;
+		private List<PlacementEnumerator.Move> moves;
+		// The moves after the last horizontal move or rotation are all down.
+		private int lastTurn;
+		private int idx;
+
+
+		/**
+		 * Constructor.
+		 */
+		public BotPolicy()
+		{
+			this.enumerators = new PlacementEnumerator[Trajectory.Type.values().length];
+			for (int i = 0; i < this.enumerators.length; i++)
+				this.enumerators[i] = new PlacementEnumerator();
+		}
+
+
+		/**
+		 * Check whether the placements may be enumerated on game boards of
+		 * the given size.
+		 *
+		 * @param width Game board width.
+		 * @param height Game board height as given to GameController.
+		 * @return Boolean.
+		 */
+		static boolean isSupported(int width, int height)
+		{
+			// The tetrominoes start at most on the row given by the height.
+			boolean retval = true;
+			for (Tetromino.Type type : Tetromino.Type.values())
+				retval &= PlacementEnumerator.isSupported(width, type, height);
+			return retval;
+		}
+
+
+		private static long placementScore(Placement placement)
+		{
+			int max = 0;
+			int sum = 0;
+			for (int packed : placement.getOccupiedPoints())
+			{
+				int y = HexPoint.packedY(packed);
+				max = Math.max(max, y);
+				sum += y;
+			}
+			return ((long) -placement.getLinesCleared() << 40) + ((long) max << 20) + sum;
+		}
+
+
+		/**
+		 * Choose the placement of a new tetromino and the moves to it.
+		 *
+		 * @param gameController The game controller.
+		 * @param tetromino The tetromino in its initial state.
+		 */
+		private void plan(GameController gameController, Tetromino tetromino)
+		{
+			GameBoard gameBoard = gameController.getGameBoard();
+			Placement best = null;
+			Trajectory.Type bestType = Trajectory.Type.Vertical;
+			long bestScore = Long.MAX_VALUE;
+			for (Trajectory.Type trajectoryType : Trajectory.Type.values())
+			{
+				PlacementEnumerator enumerator = this.enumerators[trajectoryType.ordinal()];
+				for (Placement placement : enumerator.enumerate(gameBoard, tetromino.getType(), trajectoryType, tetromino.getW(), tetromino.getH()))
+				{
+					long score = placementScore(placement);
+					if (score < bestScore)
+					{
+						best = placement;
+						bestType = trajectoryType;
+						bestScore = score;
+					}
+				}
+			}
+
+			this.gameController = gameController;
+			this.idx = 0;
+			this.lastTurn = 0;
+			this.moves = new ArrayList<PlacementEnumerator.Move>();
+			if (null != best)
+			{
+				this.moves = this.enumerators[bestType.ordinal()].moves(best);
+				for (int i = 0; i < this.moves.size(); i++)
+				{
+					if (PlacementEnumerator.Move.Down != this.moves.get(i))
+						this.lastTurn = 1 + i;
+				}
+			}
+			gameController.setPreferredTrajectory(bestType);
+		}
+
+
+		@Override
+		public boolean act(GameController gameController)
+		{
+			Tetromino tetromino = gameController.getCurrentTetromino();
+			if (null == tetromino)
+			{
+				this.moves = null;
+				return true;
+			}
+			if (null == this.moves || gameController != this.gameController)
+				this.plan(gameController, tetromino);
+
+			while (this.idx < this.lastTurn)
+			{
+				PlacementEnumerator.Move move = this.moves.get(this.idx);
+				this.idx++;
+				switch (move)
+				{
+					case Left:
+						gameController.moveLeft();
+						break;
+
+					case Right:
+						gameController.moveRight();
+						break;
+
+					case RotateCW:
+						gameController.rotateCW();
+						break;
+
+					case RotateCCW:
+						gameController.rotateCCW();
+						break;
+
+					case Down:
+						// The next step moves the tetromino down.
+						return true;
+				}
+			}
+
+			// Only moves down remain.
+			this.moves = null;
+			return gameController.drop();
+		}
+	}
+
+
+	/**
+	 * The totals of a simulation.
+	 */
+	public static class Statistics
+	{
+		private long steps;
+		private long lines;
+		private long score;
+
+
+		/**
+		 * Constructor.
+		 */
+		Statistics()
+		{
+		}
+
+
+		/**
+		 * The number of steps.
+		 *
+		 * @return The number.
+		 */
+		public long getSteps()
+		{
+			return this.steps;
+		}
+
+
+		/**
+		 * The number of removed lines.
+		 *
+		 * @return The number.
+		 */
+		public long getLines()
+		{
+			return this.lines;
+		}
+
+
+		/**
+		 * The total score.
+		 *
+		 * @return The score.
+		 */
+		public long getScore()
+		{
+			return this.score;
+		}
+	}
+
+
+	/**
+	 * Handle a key in the same way as GuiGameController.
+	 *
+	 * @param gameController The game controller.
+	 * @param key The key.
+	 * @return Boolean indicating whether the game continues.
+	 */
+	static boolean handleKey(GameController gameController, char key)
+	{
+		boolean retval = true;
+		switch (key)
+		{
+			case 'j':
+				gameController.moveLeft();
+				break;
+
+			case 'k':
+				gameController.rotateCW();
+				break;
+
+			case 'i':
+				gameController.rotateCCW();
+				break;
+
+			case 'l':
+				gameController.moveRight();
+				break;
+
+			case 'm':
+				gameController.setPreferredTrajectory(Trajectory.Type.DiagonalLeft);
+				break;
+
+			case ',':
+				gameController.setPreferredTrajectory(Trajectory.Type.Vertical);
+				break;
+
+			case '.':
+				gameController.setPreferredTrajectory(Trajectory.Type.DiagonalRight);
+				break;
+
+			case ' ':
+				retval = gameController.drop();
+				break;
+		}
+		return retval;
+	}
+
+
+	private static void usage()
+	{
+		System.err.println("Usage: Simulator [--policy random|bot|script:KEYS] [--seed N] [--width N] [--height N] [--games N] [--max-steps N]");
+		System.exit(1);
+	}
+
+
+	/**
+	 * Create a policy.
+	 *
+	 * @param name The name of the policy as given on the command line.
+	 * @param random The random number generator.
+	 * @return The policy.
+	 * @throws IllegalArgumentException if the name or the script is not valid.
+	 */
+	public static InputPolicy createPolicy(String name, Random random)
+	{
+		if ("random".equals(name))
+			return new RandomPolicy(random);
+		if ("bot".equals(name))
+			return new BotPolicy();
+		if (name.startsWith("script:"))
+			return new ScriptedPolicy(name.substring("script:".length()));
+
+		throw new IllegalArgumentException(String.format("Unknown policy %s.", name));
+	}
+
+
+	/**
+	 * The number of bytes allocated by the current thread.
+	 *
+	 * @return The number or -1 if the JVM does not report it.
+	 */
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+
+
+	/**
+	 * Play games until they end or reach the step limit.
+	 *
+	 * @param policy The policy, e.g. one returned by createPolicy.
+	 * @param random The random number generator for the tetrominoes.
+	 * @param width Game board width.
+	 * @param height Game board height.
+	 * @param games The number of games.
+	 * @param maxSteps The greatest number of steps in a game.
+	 * @return The totals.
+	 */
+	public static Statistics run(InputPolicy policy, Random random, int width, int height, int games, long maxSteps)
+	{
+		Statistics retval = new Statistics();
+		for (int i = 0; i < games; i++)
+		{
+			RandomTetrominoSource source = new RandomTetrominoSource(Tetromino.Type.values(), random);
+			GameController gameController = new GameController(source, width, height);
+			boolean running = true;
+			long gameSteps = 0;
+			while (running && gameSteps < maxSteps)
+			{
+				running = gameController.step();
+				gameSteps++;
+				if (running)
+					running = policy.act(gameController);
+			}
+
+			retval.steps += gameSteps;
+			retval.lines += gameController.getLines();
+			retval.score += gameController.getScore();
+		}
+		return retval;
+	}
+
+
+	public static void main(String[] args)
+	{
+		String policyName = "random";
+		long seed = System.currentTimeMillis();
+		int width = 10;
+		int height = 18;
+		int games = 1000;
+		long maxSteps = 100000;
+		Random random = null;
+		InputPolicy policy = null;
+
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				if (args.length <= i + 1)
+					usage();
+
+				String arg = args[i];
+				String value = args[i + 1];
+				i++;
+				if ("--policy".equals(arg))
+					policyName = value;
+				else if ("--seed".equals(arg))
+					seed = Long.parseLong(value);
+				else if ("--width".equals(arg))
+					width = Integer.parseInt(value);
+				else if ("--height".equals(arg))
+					height = Integer.parseInt(value);
+				else if ("--games".equals(arg))
+					games = Integer.parseInt(value);
+				else if ("--max-steps".equals(arg))
+					maxSteps = Long.parseLong(value);
+				else
+					usage();
+			}
+
+			if (width <= 0 || height <= 0 || games <= 0 || maxSteps <= 0)
+				usage();
+
+			// GameController adds four rows above the given height.
+			if (AbstractGameBoard.MAX_WIDTH < width)
+				throw new IllegalArgumentException(String.format("Width must be at most %d.", AbstractGameBoard.MAX_WIDTH));
+			if (AbstractGameBoard.MAX_HEIGHT - 4 < height)
+				throw new IllegalArgumentException(String.format("Height must be at most %d.", AbstractGameBoard.MAX_HEIGHT - 4));
+
+			random = new Random(seed);
+			policy = createPolicy(policyName, random);
+			if (policy instanceof BotPolicy && !BotPolicy.isSupported(width, height))
+				throw new IllegalArgumentException("The game board is too large for the bot.");
+		}
+		catch (IllegalArgumentException exc)
+		{
+			// Also thrown for invalid numbers.
+			System.err.println(exc.getMessage());
+			usage();
+		}
+
+		long startBytes = allocatedBytes();
+		long startTime = System.nanoTime();
+		Statistics statistics = run(policy, random, width, height, games, maxSteps);
+		long endTime = System.nanoTime();
+		long endBytes = allocatedBytes();
+
+		double seconds = (endTime - startTime) / 1e9;
+		System.out.printf("policy: %s seed: %d board: %dx%d%n", policyName, seed, width, height);
+		System.out.printf("games: %d steps: %d lines: %d score: %d%n", games, statistics.getSteps(), statistics.getLines(), statistics.getScore());
+		System.out.printf("time: %.3f s games/s: %.1f steps/s: %.1f%n", seconds, games / seconds, statistics.getSteps() / seconds);
+		if (-1 == startBytes || -1 == endBytes)
+			System.out.println("allocation per step: not available");
+		else
+			System.out.printf("allocation per step: %.1f bytes%n", (endBytes - startBytes) / (double) statistics.getSteps());
+	}
+}
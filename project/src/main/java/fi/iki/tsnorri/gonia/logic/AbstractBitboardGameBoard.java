@@ -0,0 +1,553 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.util.*;
+
+
+/**
+ * Common parts of the game boards that store each non-empty row as a
+ * bitmask.
+ *
+ * Bit h of row v is set if the point with horizontal offset h and Y
+ * co-ordinate v is occupied. Rows wider than 64 points span several words.
+ * Points outside the game board are not stored. The subclasses decide how
+ * the rows are kept.
+ *
+ * The rows are shared with copies of the game board. Each board has an
+ * owner token, and a row is copied before it is modified unless it was
+ * created with the board's current token.
+ *
+ * @author tsnorri
+ */
+public abstract class AbstractBitboardGameBoard extends AbstractGameBoard
+{
+	/**
+	 * A non-empty row.
+	 *
+	 * @author tsnorri
+	 */
+	static final class Row
+	{
+		Object owner;
+		long[] bits;
+		byte[] tiles;
+		int count;
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param owner The owner token.
+		 * @param words The number of words in the bitmask.
+		 * @param width The width of the row.
+		 */
+		Row(Object owner, int words, int width)
+		{
+			this.owner = owner;
+			this.bits = new long[words];
+			this.tiles = new byte[width];
+		}
+
+
+		/**
+		 * Constructor for copies.
+		 *
+		 * @param owner The owner token of the copy.
+		 * @param other The row to copy.
+		 */
+		Row(Object owner, Row other)
+		{
+			this.owner = owner;
+			this.bits = other.bits.clone();
+			this.tiles = other.tiles.clone();
+			this.count = other.count;
+		}
+
+
+		/**
+		 * Check whether the given shape row overlaps this row.
+		 *
+		 * @param word The word of the leftmost point of the shape.
+		 * @param shift The bit of the leftmost point in the word.
+		 * @param mask The shape row, starting from the leftmost point.
+		 * @return Boolean.
+		 */
+		boolean overlaps(int word, int shift, long mask)
+		{
+			long bits = this.bits[word] >>> shift;
+			if (0 != shift && 1 + word < this.bits.length)
+				bits |= this.bits[1 + word] << (64 - shift);
+			return (0 != (bits & mask));
+		}
+
+
+		/**
+		 * Rotate the row by one point, wrapping at the game board edges.
+		 *
+		 * @param width The width of the row.
+		 * @param right If true, move the points right, otherwise left.
+		 */
+		void rotate(int width, boolean right)
+		{
+			int last = this.bits.length - 1;
+			int lastBit = (width - 1) % 64;
+
+			if (right)
+			{
+				long carry = (this.bits[last] >>> lastBit) & 1L;
+				for (int i = 0; i < this.bits.length; i++)
+				{
+					long next = this.bits[i] >>> 63;
+					this.bits[i] = (this.bits[i] << 1) | carry;
+					carry = next;
+				}
+				if (63 != lastBit)
+					this.bits[last] &= (1L << (1 + lastBit)) - 1;
+
+				byte wrapped = this.tiles[width - 1];
+				System.arraycopy(this.tiles, 0, this.tiles, 1, width - 1);
+				this.tiles[0] = wrapped;
+			}
+			else
+			{
+				long carry = this.bits[0] & 1L;
+				for (int i = last; 0 <= i; i--)
+				{
+					long next = this.bits[i] & 1L;
+					this.bits[i] >>>= 1;
+					if (i == last)
+						this.bits[i] |= carry << lastBit;
+					else
+						this.bits[i] |= carry << 63;
+					carry = next;
+				}
+
+				byte wrapped = this.tiles[0];
+				System.arraycopy(this.tiles, 1, this.tiles, 0, width - 1);
+				this.tiles[width - 1] = wrapped;
+			}
+		}
+	}
+
+	private int words;
+	private Object owner;
+	private long stateHash;
+	private boolean mutable;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param width Game board width, positive.
+	 * @param height Game board height, positive.
+	 * @throws IllegalArgumentException
+	 */
+	protected AbstractBitboardGameBoard(int width, int height)
+	{
+		super(width, height);
+		this.words = (width + 63) >>> 6;
+		this.owner = new Object();
+		this.mutable = true;
+	}
+
+
+	/**
+	 * Constructor for copies. The subclass shares its rows with the other
+	 * game board.
+	 *
+	 * @param other The game board to copy.
+	 * @param mutable Whether the copy may be modified.
+	 */
+	protected AbstractBitboardGameBoard(AbstractBitboardGameBoard other, boolean mutable)
+	{
+		super(other);
+		this.words = other.words;
+		this.owner = new Object();
+		this.stateHash = other.stateHash;
+		this.mutable = mutable;
+
+		// Everything is now shared, so neither board may modify it in place.
+		other.owner = new Object();
+	}
+
+
+	/**
+	 * Copy the game board.
+	 *
+	 * @param mutable Whether the copy may be modified.
+	 * @return The copy.
+	 */
+	protected abstract AbstractBitboardGameBoard copy(boolean mutable);
+
+
+	/**
+	 * The given row.
+	 *
+	 * @param v The row, inside the game board.
+	 * @return The row or null if it is empty.
+	 */
+	abstract Row row(int v);
+
+
+	/**
+	 * Replace a row.
+	 *
+	 * @param v The row, inside the game board.
+	 * @param row The new row or null to vacate the row.
+	 */
+	abstract void setRow(int v, Row row);
+
+
+	/**
+	 * The lowest row at or above the given one that may be non-empty. Lets
+	 * the subclasses skip ranges of rows that are known to be empty.
+	 *
+	 * @param v The row.
+	 * @return The row, or a value not less than the height if there is none.
+	 */
+	protected int nextStoredRow(int v)
+	{
+		return v;
+	}
+
+
+	/**
+	 * The owner token. Parts of the game board created with it may be
+	 * modified in place.
+	 *
+	 * @return The token.
+	 */
+	Object getOwner()
+	{
+		return this.owner;
+	}
+
+
+	@Override
+	public GameBoard snapshot()
+	{
+		GameBoard retval = this;
+		if (this.mutable)
+			retval = this.copy(false);
+		return retval;
+	}
+
+
+	@Override
+	public GameBoard mutableCopy()
+	{
+		return this.copy(true);
+	}
+
+
+	/**
+	 * The given row, created or copied if needed so that it may be modified.
+	 *
+	 * @param v The row.
+	 * @return The row.
+	 */
+	private Row writableRow(int v)
+	{
+		Row retval = this.row(v);
+		if (null == retval)
+		{
+			retval = new Row(this.owner, this.words, this.getWidth());
+			this.setRow(v, retval);
+		}
+		else if (this.owner != retval.owner)
+		{
+			retval = new Row(this.owner, retval);
+			this.setRow(v, retval);
+		}
+		return retval;
+	}
+
+
+	@Override
+	protected boolean isOccupied(int h, int v)
+	{
+		Row row = this.row(v);
+		return (null != row && 0 != (row.bits[h >>> 6] & (1L << h)));
+	}
+
+
+	@Override
+	protected byte getTile(int h, int v)
+	{
+		byte retval = TilePalette.EMPTY;
+		Row row = this.row(v);
+		if (null != row)
+			retval = row.tiles[h];
+		return retval;
+	}
+
+
+	@Override
+	protected void getRowTiles(int v, byte[] tiles)
+	{
+		Row row = this.row(v);
+		if (null == row)
+			Arrays.fill(tiles, 0, this.getWidth(), TilePalette.EMPTY);
+		else
+			System.arraycopy(row.tiles, 0, tiles, 0, this.getWidth());
+	}
+
+
+	@Override
+	protected void restoreTile(int h, int v, byte tile)
+	{
+		Row row = this.writableRow(v);
+		row.bits[h >>> 6] |= (1L << h);
+		row.tiles[h] = tile;
+		row.count++;
+		this.stateHash ^= ZobristKeys.cellKey(h, v);
+		this.didOccupy(h, v);
+	}
+
+
+	@Override
+	public long stateHash()
+	{
+		return this.stateHash;
+	}
+
+
+	@Override
+	public int getOccupiedCount(int v)
+	{
+		int retval = 0;
+		if (0 <= v && v < this.getHeight())
+		{
+			Row row = this.row(v);
+			if (null != row)
+				retval = row.count;
+		}
+		return retval;
+	}
+
+
+	@Override
+	protected long rowHash(int v)
+	{
+		long retval = 0;
+		Row row = this.row(v);
+		if (null != row)
+		{
+			for (int i = 0; i < this.words; i++)
+			{
+				long bits = row.bits[i];
+				while (0 != bits)
+				{
+					int h = (i << 6) + Long.numberOfTrailingZeros(bits);
+					retval ^= ZobristKeys.cellKey(h, v);
+					bits &= bits - 1;
+				}
+			}
+		}
+		return retval;
+	}
+
+
+	@Override
+	protected int findColumnHeights(int v, int[] heights)
+	{
+		int retval = 0;
+		Row row = this.row(v);
+		if (null != row)
+		{
+			for (int i = 0; i < this.words; i++)
+			{
+				long bits = row.bits[i];
+				while (0 != bits)
+				{
+					int h = (i << 6) + Long.numberOfTrailingZeros(bits);
+					if (0 == heights[h])
+					{
+						heights[h] = 1 + v;
+						retval++;
+					}
+					bits &= bits - 1;
+				}
+			}
+		}
+		return retval;
+	}
+
+
+	@Override
+	public boolean canPlace(Tetromino.Type type, int orientation, int w, int h)
+	{
+		TetrominoShape shape = TetrominoShape.valueOf(type, orientation, h);
+		int left = w + shape.getMinHorizontalOffset();
+		int right = w + shape.getMaxHorizontalOffset();
+		if (left < 0 || this.getWidth() <= right || h < 0 || this.getHeight() < h + shape.getRowCount())
+			return false;
+
+		// Compare the rows of the shape with the bits starting from the leftmost point.
+		int word = left >>> 6;
+		int shift = left & 63;
+		for (int i = 0; i < shape.getRowCount(); i++)
+		{
+			Row row = this.row(h + i);
+			if (null != row && row.overlaps(word, shift, shape.getRowMask(i)))
+				return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Move a row down. The destination row must be empty.
+	 *
+	 * The horizontal shift matches the one done by HexPoint's orthogonal
+	 * translation: rows with the same parity as the lowest moved row keep
+	 * their offsets, the others are shifted by one point if the distance is
+	 * odd.
+	 *
+	 * @param src The source row.
+	 * @param distance The number of rows to move.
+	 * @param lowestParity Parity of the lowest non-empty row of the moved
+	 * block.
+	 * @param wrapped The wrapped point is added here if not null.
+	 */
+	private void moveRowDown(int src, int distance, int lowestParity, HexPointSet wrapped)
+	{
+		Row row = this.row(src);
+		if (null == row)
+			return;
+
+		int dst = src - distance;
+		this.stateHash ^= this.rowHash(src);
+		this.setRow(src, null);
+		this.setRow(dst, row);
+
+		if (1 == distance % 2 && lowestParity != src % 2)
+		{
+			boolean right = (0 == lowestParity);
+			this.writableRow(dst).rotate(this.getWidth(), right);
+
+			// Rotating by one wraps at most one point.
+			int h = (right ? 0 : this.getWidth() - 1);
+			if (null != wrapped && this.isOccupied(h, dst))
+				wrapped.add(HexPoint.packOffsets(h, dst));
+		}
+
+		this.stateHash ^= this.rowHash(dst);
+	}
+
+
+	@Override
+	public int occupySpace(HexPoint[] points, byte tile)
+	{
+		if (!this.mutable)
+			throw new UnsupportedOperationException("The game board is immutable.");
+		if (TilePalette.EMPTY == tile)
+			throw new IllegalArgumentException("Tile must not be empty.");
+
+		int k = 0;
+		int l = 0;
+		int shiftEnd = 0;
+		int[] yCoords = new int[points.length];
+		int[] lines = new int[1 + points.length];
+		int[] occupied = null;
+		HexPointSet wrapped = null;
+		if (this.hasListeners())
+		{
+			occupied = new int[points.length];
+			wrapped = new HexPointSet();
+		}
+
+		// Add the given points and remember the possible lines.
+		for (HexPoint point : points)
+		{
+			int h = point.getHorizontalOffset();
+			int v = point.getY();
+			if (this.isValid(h, v))
+			{
+				Row row = this.writableRow(v);
+				long bit = 1L << h;
+				if (0 == (row.bits[h >>> 6] & bit))
+				{
+					row.bits[h >>> 6] |= bit;
+					row.count++;
+					this.stateHash ^= ZobristKeys.cellKey(h, v);
+				}
+				row.tiles[h] = tile;
+				this.didOccupy(h, v);
+				if (null != occupied)
+					occupied[k] = HexPoint.packOffsets(h, v);
+				yCoords[k] = v;
+				k++;
+			}
+		}
+		Arrays.sort(yCoords, 0, k);
+
+		// Check the lines.
+		for (int i = 0; i < k; i++)
+		{
+			int y = yCoords[i];
+			if ((0 == i || yCoords[i - 1] != y) && this.getWidth() == this.getOccupiedCount(y))
+			{
+				this.stateHash ^= this.rowHash(y);
+				this.setRow(y, null);
+				lines[l] = y;
+				l++;
+			}
+		}
+
+		// Rows above the highest occupied one are empty and need not be visited.
+		lines[l] = Math.min(this.getHeight(), this.getMaxColumnHeight());
+
+		// Move the rows between the removed lines down.
+		for (int i = 0; i < l; i++)
+		{
+			int first = this.nextStoredRow(1 + lines[i]);
+			int limit = lines[i + 1];
+			while (first < limit && 0 == this.getOccupiedCount(first))
+				first = this.nextStoredRow(1 + first);
+
+			int lowestParity = first % 2;
+			for (int j = first; j < limit; j = this.nextStoredRow(1 + j))
+			{
+				if (0 != this.getOccupiedCount(j))
+					shiftEnd = 1 + j;
+				this.moveRowDown(j, 1 + i, lowestParity, wrapped);
+			}
+		}
+
+		if (0 < l)
+			this.didRemoveLines(lines[0]);
+		if (null == occupied)
+			this.didChange(null, null, shiftEnd, null);
+		else
+			this.didChange(Arrays.copyOf(occupied, k), Arrays.copyOf(lines, l), shiftEnd, wrapped.toSortedArray());
+		return l;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		List<HexPoint> points = new ArrayList<HexPoint>();
+		for (int v = this.nextStoredRow(0); v < this.getHeight(); v = this.nextStoredRow(1 + v))
+		{
+			if (0 == this.getOccupiedCount(v))
+				continue;
+
+			for (int h = 0; h < this.getWidth(); h++)
+			{
+				if (this.isOccupied(h, v))
+					points.add(HexPoint.createWithOffsets(h, v));
+			}
+		}
+		return HexPoint.stringRepresentationForPoints(points, 0, 0, this.getWidth(), this.getHeight());
+	}
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Common parts of the game board implementations. The subclasses only need
+ * to tell whether a location inside the game board is occupied; the checks
+ * are done with the orthogonal co-ordinates without creating new points.
+ *
+ * @author tsnorri
+ */
+public abstract class AbstractGameBoard implements GameBoard
+{
+	// Room for tetrominoes partly outside the game board.
+	private static final int PACKED_MARGIN = 8;
+
+	/**
+	 * The greatest width. The points of the game board and the tetrominoes
+	 * next to it must fit in the packed form.
+	 *
+	 * @see HexPoint#MAX_PACKED_HORIZONTAL_OFFSET
+	 */
+	public static final int MAX_WIDTH = HexPoint.MAX_PACKED_HORIZONTAL_OFFSET + 1 - PACKED_MARGIN;
+
+	/**
+	 * The greatest height.
+	 *
+	 * @see HexPoint#MAX_PACKED_Y
+	 */
+	public static final int MAX_HEIGHT = HexPoint.MAX_PACKED_Y + 1 - PACKED_MARGIN;
+
+	private int width;
+	private int height;
+	private long version;
+	private List<GameBoardListener> listeners;
+	private int[] columnHeights;
+	private int[] spareColumnHeights;
+	private int maxColumnHeight;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param width Game board width, in [1, MAX_WIDTH].
+	 * @param height Game board height, in [1, MAX_HEIGHT].
+	 * @throws IllegalArgumentException
+	 */
+	protected AbstractGameBoard(int width, int height)
+	{
+		if (!(0 < width))
+			throw new IllegalArgumentException("Width must be positive.");
+		if (!(0 < height))
+			throw new IllegalArgumentException("Height must be positive.");
+		if (MAX_WIDTH < width)
+			throw new IllegalArgumentException(String.format("Width must be at most %d.", MAX_WIDTH));
+		if (MAX_HEIGHT < height)
+			throw new IllegalArgumentException(String.format("Height must be at most %d.", MAX_HEIGHT));
+
+		this.width = width;
+		this.height = height;
+		this.listeners = new ArrayList<GameBoardListener>();
+		this.columnHeights = new int[width];
+		this.spareColumnHeights = new int[width];
+	}
+
+
+	/**
+	 * Constructor for copies. The listeners are not copied.
+	 *
+	 * @param other The game board to copy.
+	 */
+	protected AbstractGameBoard(AbstractGameBoard other)
+	{
+		this.width = other.width;
+		this.height = other.height;
+		this.listeners = new ArrayList<GameBoardListener>();
+		this.version = other.version;
+		this.columnHeights = other.columnHeights.clone();
+		this.spareColumnHeights = new int[other.width];
+		this.maxColumnHeight = other.maxColumnHeight;
+	}
+
+
+	@Override
+	public int getColumnHeight(int h)
+	{
+		int retval = 0;
+		if (0 <= h && h < this.width)
+			retval = this.columnHeights[h];
+		return retval;
+	}
+
+
+	@Override
+	public int getMaxColumnHeight()
+	{
+		return this.maxColumnHeight;
+	}
+
+
+	@Override
+	public int getSurfaceProfile(int h)
+	{
+		return this.getColumnHeight(1 + h) - this.getColumnHeight(h);
+	}
+
+
+	/**
+	 * Update the column height after occupying a location.
+	 *
+	 * @param h Horizontal offset, inside the game board.
+	 * @param v Vertical offset, inside the game board.
+	 */
+	protected void didOccupy(int h, int v)
+	{
+		if (this.columnHeights[h] <= v)
+		{
+			this.columnHeights[h] = 1 + v;
+			this.maxColumnHeight = Math.max(this.maxColumnHeight, 1 + v);
+		}
+	}
+
+
+	/**
+	 * Recalculate the column heights after removing lines.
+	 *
+	 * The rows below the lowest removed line did not change, so the moved
+	 * rows are scanned first and the columns that did not reach the lowest
+	 * line keep their heights. The rows below the line are only scanned for
+	 * the rest of the columns, i.e. the ones whose highest remaining point is
+	 * under a removed line. In the worst case, when such a point is near the
+	 * bottom, that is still every row below the line.
+	 *
+	 * @param lowestLine The lowest removed line.
+	 */
+	protected void didRemoveLines(int lowestLine)
+	{
+		int[] heights = this.spareColumnHeights;
+		int remaining = this.width;
+		Arrays.fill(heights, 0);
+		for (int v = this.lastNonEmptyRow(this.maxColumnHeight - 1); lowestLine <= v && 0 < remaining; v = this.lastNonEmptyRow(v - 1))
+			remaining -= this.findColumnHeights(v, heights);
+
+		remaining = 0;
+		for (int h = 0; h < this.width; h++)
+		{
+			if (0 == heights[h])
+			{
+				if (this.columnHeights[h] <= lowestLine)
+					heights[h] = this.columnHeights[h];
+				else
+					remaining++;
+			}
+		}
+
+		// Columns with no points at all are never found, so they are not counted.
+		for (int v = this.lastNonEmptyRow(lowestLine - 1); 0 <= v && 0 < remaining; v = this.lastNonEmptyRow(v - 1))
+			remaining -= this.findColumnHeights(v, heights);
+
+		int max = 0;
+		for (int h = 0; h < this.width; h++)
+			max = Math.max(max, heights[h]);
+
+		this.spareColumnHeights = this.columnHeights;
+		this.columnHeights = heights;
+		this.maxColumnHeight = max;
+	}
+
+
+	/**
+	 * The highest non-empty row at or below the given one. Subclasses may
+	 * override this to skip ranges of rows that are known to be empty.
+	 *
+	 * @param v The row.
+	 * @return The row or -1 if there is none.
+	 */
+	protected int lastNonEmptyRow(int v)
+	{
+		int retval = Math.min(v, this.height - 1);
+		while (0 <= retval && 0 == this.getOccupiedCount(retval))
+			retval--;
+		return retval;
+	}
+
+
+	/**
+	 * Set the heights of the columns that are occupied on the given row and
+	 * do not have a height yet.
+	 *
+	 * @param v Vertical offset, inside the game board.
+	 * @param heights The column heights, zero if not found yet.
+	 * @return The number of heights that were set.
+	 */
+	protected int findColumnHeights(int v, int[] heights)
+	{
+		int retval = 0;
+		for (int h = 0; h < this.width; h++)
+		{
+			if (0 == heights[h] && this.isOccupied(h, v))
+			{
+				heights[h] = 1 + v;
+				retval++;
+			}
+		}
+		return retval;
+	}
+
+
+	@Override
+	public long version()
+	{
+		return this.version;
+	}
+
+
+	@Override
+	public void addListener(GameBoardListener listener)
+	{
+		this.listeners.add(listener);
+	}
+
+
+	@Override
+	public void removeListener(GameBoardListener listener)
+	{
+		this.listeners.remove(listener);
+	}
+
+
+	/**
+	 * Check whether the changes need to be recorded for the listeners.
+	 *
+	 * @return Boolean.
+	 */
+	protected boolean hasListeners()
+	{
+		return !this.listeners.isEmpty();
+	}
+
+
+	/**
+	 * Increment the version after a change and notify the listeners.
+	 *
+	 * @param occupiedPoints The occupied points, packed, or null if there are no listeners.
+	 * @param removedLines The removed lines.
+	 * @param shiftEnd One past the highest non-empty row that was moved.
+	 * @param wrappedPoints The wrapped points, packed, or null if there are no listeners.
+	 */
+	protected void didChange(int[] occupiedPoints, int[] removedLines, int shiftEnd, int[] wrappedPoints)
+	{
+		this.version++;
+		if (this.hasListeners())
+		{
+			GameBoardChange change = new GameBoardChange(this, this.version, occupiedPoints, removedLines, shiftEnd, wrappedPoints);
+			// Copy the list so that the listeners may remove themselves.
+			for (GameBoardListener listener : new ArrayList<GameBoardListener>(this.listeners))
+				listener.gameBoardChanged(change);
+		}
+	}
+
+
+	@Override
+	public int getWidth()
+	{
+		return this.width;
+	}
+
+
+	@Override
+	public int getHeight()
+	{
+		return this.height;
+	}
+
+
+	/**
+	 * Check whether the given location is inside the game board.
+	 *
+	 * @param h Horizontal offset.
+	 * @param v Vertical offset.
+	 * @return Boolean.
+	 */
+	protected boolean isValid(int h, int v)
+	{
+		return (0 <= h && h < this.width && 0 <= v && v < this.height);
+	}
+
+
+	/**
+	 * Check whether the given location is occupied.
+	 *
+	 * @param h Horizontal offset, inside the game board.
+	 * @param v Vertical offset, inside the game board.
+	 * @return Boolean.
+	 */
+	protected abstract boolean isOccupied(int h, int v);
+
+
+	/**
+	 * The palette index of the given location.
+	 *
+	 * @param h Horizontal offset, inside the game board.
+	 * @param v Vertical offset, inside the game board.
+	 * @return The index or TilePalette.EMPTY.
+	 */
+	protected abstract byte getTile(int h, int v);
+
+
+	/**
+	 * Copy the palette indices of a row.
+	 *
+	 * @param v Vertical offset, inside the game board.
+	 * @param tiles The indices are stored here, TilePalette.EMPTY for the
+	 * vacant locations. At least as long as the width.
+	 */
+	protected void getRowTiles(int v, byte[] tiles)
+	{
+		for (int h = 0; h < this.width; h++)
+			tiles[h] = this.getTile(h, v);
+	}
+
+
+	/**
+	 * Occupy a vacant location without checking for full lines. Used when
+	 * restoring a saved state that has no full lines.
+	 *
+	 * @param h Horizontal offset, inside the game board.
+	 * @param v Vertical offset, inside the game board.
+	 * @param tile The palette index, not TilePalette.EMPTY.
+	 */
+	protected abstract void restoreTile(int h, int v, byte tile);
+
+
+	/**
+	 * XOR of the Zobrist keys of the occupied locations on the given row.
+	 *
+	 * @param v Vertical offset, inside the game board.
+	 * @return The hash.
+	 * @see ZobristKeys#cellKey(int, int)
+	 */
+	protected long rowHash(int v)
+	{
+		long retval = 0;
+		for (int h = 0; h < this.width; h++)
+		{
+			if (this.isOccupied(h, v))
+				retval ^= ZobristKeys.cellKey(h, v);
+		}
+		return retval;
+	}
+
+
+	/**
+	 * Check whether the given location is valid and vacant.
+	 *
+	 * @param h Horizontal offset.
+	 * @param v Vertical offset.
+	 * @return Boolean.
+	 */
+	protected boolean isValidAndVacant(int h, int v)
+	{
+		return (this.isValid(h, v) && !this.isOccupied(h, v));
+	}
+
+
+	@Override
+	public boolean isValidAndVacant(HexPoint point)
+	{
+		return this.isValidAndVacant(point.getHorizontalOffset(), point.getY());
+	}
+
+
+	@Override
+	public boolean isValidAndVacant(int packed)
+	{
+		return this.isValidAndVacant(HexPoint.packedHorizontalOffset(packed), HexPoint.packedY(packed));
+	}
+
+
+	@Override
+	public boolean isOccupied(HexPoint point)
+	{
+		int h = point.getHorizontalOffset();
+		int v = point.getY();
+		return (this.isValid(h, v) && this.isOccupied(h, v));
+	}
+
+
+	@Override
+	public boolean isOccupied(int packed)
+	{
+		int h = HexPoint.packedHorizontalOffset(packed);
+		int v = HexPoint.packedY(packed);
+		return (this.isValid(h, v) && this.isOccupied(h, v));
+	}
+
+
+	@Override
+	public byte getTile(HexPoint point)
+	{
+		int h = point.getHorizontalOffset();
+		int v = point.getY();
+		byte retval = TilePalette.EMPTY;
+		if (this.isValid(h, v))
+			retval = this.getTile(h, v);
+		return retval;
+	}
+
+
+	@Override
+	public byte getTile(int packed)
+	{
+		int h = HexPoint.packedHorizontalOffset(packed);
+		int v = HexPoint.packedY(packed);
+		byte retval = TilePalette.EMPTY;
+		if (this.isValid(h, v))
+			retval = this.getTile(h, v);
+		return retval;
+	}
+
+
+	@Override
+	public Color colorForOccupiedPoint(HexPoint point)
+	{
+		return TilePalette.colorForIndex(this.getTile(point));
+	}
+
+
+	@Override
+	public boolean areAllValidAndVacant(Collection<? extends HexPoint> points)
+	{
+		for (HexPoint point : points)
+		{
+			if (!this.isValidAndVacant(point))
+				return false;
+		}
+		return true;
+	}
+
+
+	@Override
+	public boolean canPlace(Tetromino.Type type, int orientation, int w, int h)
+	{
+		TetrominoShape shape = TetrominoShape.valueOf(type, orientation, h);
+		for (int i = 0; i < shape.getPointCount(); i++)
+		{
+			if (!this.isValidAndVacant(w + shape.getHorizontalOffset(i), h + shape.getVerticalOffset(i)))
+				return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Check whether there is free space around the given positions.
+	 *
+	 * @param points Locations.
+	 * @param dw Horizontal distance from the locations.
+	 * @param dh Vertical distance from the locations.
+	 * @return Boolean.
+	 */
+	protected boolean hasSpace(Collection<? extends HexPoint> points, int dw, int dh)
+	{
+		int dx = HexPoint.translationX(dw, dh, HexPoint.shouldMoveRight(points));
+		for (HexPoint point : points)
+		{
+			int x = point.getX() + dx;
+			int y = point.getY() + dh;
+			if (!this.isValidAndVacant(HexPoint.horizontalOffset(x, y), y))
+				return false;
+		}
+		return true;
+	}
+
+
+	@Override
+	public boolean hasSpaceLeft(Collection<? extends HexPoint> points)
+	{
+		return hasSpace(points, -1, 0);
+	}
+
+
+	@Override
+	public boolean hasSpaceRight(Collection<? extends HexPoint> points)
+	{
+		return hasSpace(points, +1, 0);
+	}
+
+
+	@Override
+	public boolean hasSpaceUnder(Collection<? extends HexPoint> points)
+	{
+		return hasSpace(points, 0, -1);
+	}
+
+
+	@Override
+	public int occupySpace(HexPoint[] points, Color color)
+	{
+		return this.occupySpace(points, TilePalette.indexForColor(color));
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+/**
+ * Game board implementation that stores the occupancy of each row as a
+ * bitmask.
+ *
+ * The rows are kept in an array indexed by the Y co-ordinate; empty rows
+ * are not allocated. Copies of the game board share the rows until either
+ * board modifies them.
+ *
+ * @author tsnorri
+ */
+public class BitboardGameBoard extends AbstractBitboardGameBoard
+{
+	private Row[] rows;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param width Game board width, positive.
+	 * @param height Game board height, positive.
+	 * @throws IllegalArgumentException
+	 */
+	public BitboardGameBoard(int width, int height)
+	{
+		super(width, height);
+		this.rows = new Row[height];
+	}
+
+
+	/**
+	 * Constructor for copies.
+	 *
+	 * @param other The game board to copy.
+	 * @param mutable Whether the copy may be modified.
+	 */
+	private BitboardGameBoard(BitboardGameBoard other, boolean mutable)
+	{
+		super(other, mutable);
+		this.rows = other.rows.clone();
+	}
+
+
+	@Override
+	protected AbstractBitboardGameBoard copy(boolean mutable)
+	{
+		return new BitboardGameBoard(this, mutable);
+	}
+
+
+	@Override
+	Row row(int v)
+	{
+		return this.rows[v];
+	}
+
+
+	@Override
+	void setRow(int v, Row row)
+	{
+		this.rows[v] = row;
+	}
+}
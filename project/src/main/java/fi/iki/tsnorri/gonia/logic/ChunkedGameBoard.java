@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+/**
+ * Sparse game board implementation for very tall or very wide game boards.
+ *
+ * Only the non-empty rows are stored. They are kept in chunks of CHUNK_ROWS
+ * consecutive rows, and chunks without rows are not allocated. When lines
+ * are removed, the rows above them are moved by relinking and the empty
+ * chunks are skipped, so the cost depends on the number of occupied rows
+ * between the lowest removed line and the highest occupied row instead of
+ * the height of the game board.
+ *
+ * The chunks are shared with copies of the game board in the same way as
+ * the rows.
+ *
+ * @author tsnorri
+ */
+public class ChunkedGameBoard extends AbstractBitboardGameBoard
+{
+	/**
+	 * The number of rows in a chunk.
+	 */
+	public static final int CHUNK_ROWS = 32;
+
+	private static final int CHUNK_SHIFT = 5;
+
+
+	/**
+	 * Consecutive rows, some of which may be missing.
+	 *
+	 * @author tsnorri
+	 */
+	private static final class Chunk
+	{
+		Object owner;
+		Row[] rows;
+		int count;
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param owner The owner token.
+		 */
+		Chunk(Object owner)
+		{
+			this.owner = owner;
+			this.rows = new Row[CHUNK_ROWS];
+		}
+
+
+		/**
+		 * Constructor for copies. The rows are shared.
+		 *
+		 * @param owner The owner token of the copy.
+		 * @param other The chunk to copy.
+		 */
+		Chunk(Object owner, Chunk other)
+		{
+			this.owner = owner;
+			this.rows = other.rows.clone();
+			this.count = other.count;
+		}
+	}
+
+	private Chunk[] chunks;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param width Game board width, positive.
+	 * @param height Game board height, positive.
+	 * @throws IllegalArgumentException
+	 */
+	public ChunkedGameBoard(int width, int height)
+	{
+		super(width, height);
+		this.chunks = new Chunk[(height + CHUNK_ROWS - 1) >>> CHUNK_SHIFT];
+	}
+
+
+	/**
+	 * Constructor for copies.
+	 *
+	 * @param other The game board to copy.
+	 * @param mutable Whether the copy may be modified.
+	 */
+	private ChunkedGameBoard(ChunkedGameBoard other, boolean mutable)
+	{
+		super(other, mutable);
+		this.chunks = other.chunks.clone();
+	}
+
+
+	@Override
+	protected AbstractBitboardGameBoard copy(boolean mutable)
+	{
+		return new ChunkedGameBoard(this, mutable);
+	}
+
+
+	@Override
+	Row row(int v)
+	{
+		Row retval = null;
+		Chunk chunk = this.chunks[v >>> CHUNK_SHIFT];
+		if (null != chunk)
+			retval = chunk.rows[v & (CHUNK_ROWS - 1)];
+		return retval;
+	}
+
+
+	/**
+	 * The chunk with the given index, created or copied if needed so that it
+	 * may be modified.
+	 *
+	 * @param c The index.
+	 * @return The chunk.
+	 */
+	private Chunk writableChunk(int c)
+	{
+		Chunk retval = this.chunks[c];
+		if (null == retval)
+		{
+			retval = new Chunk(this.getOwner());
+			this.chunks[c] = retval;
+		}
+		else if (this.getOwner() != retval.owner)
+		{
+			retval = new Chunk(this.getOwner(), retval);
+			this.chunks[c] = retval;
+		}
+		return retval;
+	}
+
+
+	@Override
+	void setRow(int v, Row row)
+	{
+		int c = v >>> CHUNK_SHIFT;
+		int i = v & (CHUNK_ROWS - 1);
+		if (null == row && (null == this.chunks[c] || null == this.chunks[c].rows[i]))
+			return;
+
+		Chunk chunk = this.writableChunk(c);
+		if (null == chunk.rows[i])
+			chunk.count++;
+		if (null == row)
+			chunk.count--;
+		chunk.rows[i] = row;
+
+		if (0 == chunk.count)
+			this.chunks[c] = null;
+	}
+
+
+	@Override
+	protected int nextStoredRow(int v)
+	{
+		// Skip the chunks that have no rows.
+		int retval = v;
+		while (retval < this.getHeight() && null == this.chunks[retval >>> CHUNK_SHIFT])
+			retval = (1 + (retval >>> CHUNK_SHIFT)) << CHUNK_SHIFT;
+		return retval;
+	}
+
+
+	@Override
+	protected int lastNonEmptyRow(int v)
+	{
+		int retval = Math.min(v, this.getHeight() - 1);
+		while (0 <= retval)
+		{
+			// Skip the chunks that have no rows.
+			if (null == this.chunks[retval >>> CHUNK_SHIFT])
+				retval = ((retval >>> CHUNK_SHIFT) << CHUNK_SHIFT) - 1;
+			else if (0 == this.getOccupiedCount(retval))
+				retval--;
+			else
+				break;
+		}
+		return retval;
+	}
+}
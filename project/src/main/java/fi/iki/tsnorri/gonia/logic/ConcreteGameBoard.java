@@ -9,20 +9,31 @@
  */
 package fi.iki.tsnorri.gonia.logic;
 
-import java.awt.Color;
 import java.util.*;
 
 
 /**
  * Game board implementation.
  *
+ * Each row is stored as an array of palette indices. Points outside the game
+ * board are not stored. Copies of the game board share the rows until either
+ * board modifies them.
+ *
+ * The implementation does not share code with the bitmask boards on
+ * purpose: it only uses the per-point operations, so the tests use it as the
+ * reference that BitboardGameBoard and ChunkedGameBoard are compared with.
+ *
  * @author tsnorri
+ * @see TilePalette
  */
-public class ConcreteGameBoard implements GameBoard
+public class ConcreteGameBoard extends AbstractGameBoard
 {
-	private int width;
-	private int height;
-	private SortedMap<HexPoint, Color> occupiedTiles;
+	private byte[][] rows;
+	private int[] rowCounts;
+	private long stateHash;
+	// Rows that are not shared with copies of the game board.
+	private boolean[] ownedRows;
+	private boolean mutable;
 
 
 	/**
@@ -34,133 +45,179 @@ public class ConcreteGameBoard implements GameBoard
 	 */
 	public ConcreteGameBoard(int width, int height)
 	{
-		if (!(0 < width))
-			throw new IllegalArgumentException("Width must be positive.");
-		if (!(0 < height))
-			throw new IllegalArgumentException("Height must be positive.");
-
-		this.width = width;
-		this.height = height;
-		this.occupiedTiles = new TreeMap<HexPoint, Color>(new HexPoint.Comparator());
+		super(width, height);
+		this.rows = new byte[height][width];
+		this.rowCounts = new int[height];
+		this.ownedRows = new boolean[height];
+		this.mutable = true;
+		Arrays.fill(this.ownedRows, true);
 	}
 
 
-	@Override
-	public int getWidth()
+	/**
+	 * Constructor for copies.
+	 *
+	 * @param other The game board to copy.
+	 * @param mutable Whether the copy may be modified.
+	 */
+	private ConcreteGameBoard(ConcreteGameBoard other, boolean mutable)
 	{
-		return this.width;
+		super(other);
+		this.rows = other.rows.clone();
+		this.rowCounts = other.rowCounts.clone();
+		this.stateHash = other.stateHash;
+		this.ownedRows = new boolean[other.getHeight()];
+		this.mutable = mutable;
+		Arrays.fill(other.ownedRows, false);
 	}
 
 
 	@Override
-	public int getHeight()
+	public GameBoard snapshot()
 	{
-		return this.height;
+		GameBoard retval = this;
+		if (this.mutable)
+			retval = new ConcreteGameBoard(this, false);
+		return retval;
 	}
 
 
 	@Override
-	public boolean isOccupied(HexPoint point)
+	public GameBoard mutableCopy()
 	{
-		return this.occupiedTiles.containsKey(point);
+		return new ConcreteGameBoard(this, true);
 	}
 
 
-	@Override
-	public Color colorForOccupiedPoint(HexPoint point)
+	/**
+	 * The given row for modifying. Copies the row if it is shared.
+	 *
+	 * @param v The row.
+	 * @return The row.
+	 */
+	private byte[] writableRow(int v)
 	{
-		return this.occupiedTiles.get(point);
+		if (!this.ownedRows[v])
+		{
+			this.rows[v] = this.rows[v].clone();
+			this.ownedRows[v] = true;
+		}
+		return this.rows[v];
 	}
 
 
-	@Override
-	public boolean areAllValidAndVacant(Collection<? extends HexPoint> points)
+	/**
+	 * Vacate a row.
+	 *
+	 * @param v The row.
+	 */
+	private void clearRow(int v)
 	{
-		for (HexPoint point : points)
+		if (this.ownedRows[v])
+			Arrays.fill(this.rows[v], TilePalette.EMPTY);
+		else
 		{
-			if (this.occupiedTiles.containsKey(point))
-				return false;
-
-			int h = point.getHorizontalOffset();
-			int v = point.getY();
-			if (!(0 <= h && h < this.width && 0 <= v && v < this.height))
-				return false;
+			this.rows[v] = new byte[this.getWidth()];
+			this.ownedRows[v] = true;
 		}
-		return true;
+		this.rowCounts[v] = 0;
 	}
 
 
 	@Override
-	public boolean isValidAndVacant(HexPoint point)
+	protected byte getTile(int h, int v)
 	{
-		boolean retval = false;
-		if (!this.occupiedTiles.containsKey(point))
-		{
-			int h = point.getHorizontalOffset();
-			int v = point.getY();
-			if (0 <= h && h < this.width && 0 <= v && v < this.height)
-				retval = true;
-		}
-		return retval;
+		return this.rows[v][h];
 	}
 
 
-	/**
-	 * Check whether there is free space around the given positions.
-	 *
-	 * @param points Locations.
-	 * @param dw Horizontal distance from the locations.
-	 * @param dh Vertical distance from the locations.
-	 * @return Boolean.
-	 */
-	private boolean hasSpace(Collection<? extends HexPoint> points, int dw, int dh)
+	@Override
+	protected void getRowTiles(int v, byte[] tiles)
 	{
-		HexPoint[] translated = HexPoint.copyWithOrthogonalTranslation(points, dw, dh);
-		for (HexPoint point : Arrays.asList(translated))
-		{
-			if (!this.isValidAndVacant(point))
-				return false;
-		}
-		return true;
+		System.arraycopy(this.rows[v], 0, tiles, 0, this.getWidth());
 	}
 
 
 	@Override
-	public boolean hasSpaceLeft(Collection<? extends HexPoint> points)
+	protected void restoreTile(int h, int v, byte tile)
 	{
-		return hasSpace(points, -1, 0);
+		this.writableRow(v)[h] = tile;
+		this.rowCounts[v]++;
+		this.stateHash ^= ZobristKeys.cellKey(h, v);
+		this.didOccupy(h, v);
 	}
 
 
 	@Override
-	public boolean hasSpaceRight(Collection<? extends HexPoint> points)
+	protected boolean isOccupied(int h, int v)
 	{
-		return hasSpace(points, +1, 0);
+		return (TilePalette.EMPTY != this.rows[v][h]);
 	}
 
 
 	@Override
-	public boolean hasSpaceUnder(Collection<? extends HexPoint> points)
+	public long stateHash()
 	{
-		return hasSpace(points, 0, -1);
+		return this.stateHash;
 	}
 
 
 	@Override
-	public int occupySpace(HexPoint[] points, Color color)
+	public int getOccupiedCount(int v)
 	{
+		int retval = 0;
+		if (0 <= v && v < this.getHeight())
+			retval = this.rowCounts[v];
+		return retval;
+	}
+
+
+	@Override
+	public int occupySpace(HexPoint[] points, byte tile)
+	{
+		if (!this.mutable)
+			throw new UnsupportedOperationException("The game board is immutable.");
+		if (TilePalette.EMPTY == tile)
+			throw new IllegalArgumentException("Tile must not be empty.");
+
 		int k = 0;
 		int l = 0;
 		int previous = -1;
+		int m = 0;
+		int shiftEnd = 0;
 		int[] yCoords = new int[points.length];
 		int[] lines = new int[1 + points.length];
+		int[] occupied = null;
+		HexPointSet wrapped = null;
+		if (this.hasListeners())
+		{
+			occupied = new int[points.length];
+			wrapped = new HexPointSet();
+		}
 
 		// Add the given points and remember the possible lines.
 		Arrays.sort(points, new HexPoint.Comparator());
 		for (HexPoint point : Arrays.asList(points))
 		{
+			int h = point.getHorizontalOffset();
 			int y = point.getY();
-			this.occupiedTiles.put(point.clone(), color);
+			if (this.isValid(h, y))
+			{
+				if (!this.isOccupied(h, y))
+				{
+					this.rowCounts[y]++;
+					this.stateHash ^= ZobristKeys.cellKey(h, y);
+				}
+				this.writableRow(y)[h] = tile;
+				this.didOccupy(h, y);
+
+				if (null != occupied)
+				{
+					occupied[m] = HexPoint.packOffsets(h, y);
+					m++;
+				}
+			}
+
 			if (previous != y)
 			{
 				previous = y;
@@ -170,68 +227,93 @@ public class ConcreteGameBoard implements GameBoard
 		}
 
 		// Check the lines.
+		for (int i = 0; i < k; i++)
 		{
-			List<HexPoint> buffer = new ArrayList<HexPoint>();
-			for (int i = 0; i < k; i++)
+			int y = yCoords[i];
+			if (this.getWidth() == this.getOccupiedCount(y))
 			{
-				HexPoint first = HexPoint.createWithOffsets(0, yCoords[i]);
-				HexPoint last = HexPoint.createWithOffsets(this.width, yCoords[i]);
-				SortedMap<HexPoint, Color> line = this.occupiedTiles.subMap(first, last);
-				if (this.width == line.size())
-				{
-					buffer.addAll(line.keySet());
-					for (HexPoint point : buffer)
-						this.occupiedTiles.remove(point);
-					buffer.clear();
+				this.stateHash ^= this.rowHash(y);
+				this.clearRow(y);
 
-					lines[l] = yCoords[i];
-					l++;
-				}
+				lines[l] = y;
+				l++;
 			}
-			lines[l] = this.height;
 		}
+		lines[l] = this.getHeight();
 
+		// Move the rows between the removed lines down.
+		for (int i = 0; i < l; i++)
 		{
-			// Some points may end up outside the game board, fix them by wrapping.
-			int[][] t1 = HexPoint.translationTransformation(+this.width, 0, false);
-			int[][] t2 = HexPoint.translationTransformation(-this.width, 0, false);
-
-			SortedMap<HexPoint, Color> buffer = new TreeMap<HexPoint, Color>(new HexPoint.Comparator());
-			for (int i = 0; i < l; i++)
+			int first = 1 + lines[i];
+			int limit = lines[i + 1];
+			while (first < limit && 0 == this.rowCounts[first])
+				first++;
+
+			// Translate as HexPoint would and calculate the change in the offsets.
+			int dx = HexPoint.translationX(0, -(1 + i), 0 == first % 2);
+			for (int j = first; j < limit; j++)
 			{
-				HexPoint first = HexPoint.createWithOffsets(0, lines[i]);
-				HexPoint last = HexPoint.createWithOffsets(0, lines[i + 1]);
-				SortedMap<HexPoint, Color> between = this.occupiedTiles.subMap(first, last);
-				buffer.putAll(between);
-				for (HexPoint point : buffer.keySet())
-					this.occupiedTiles.remove(point);
-
-				// We make the assumption that keySet remains sorted even though it hasn't been declared as such.
-				HexPoint[] transformed = HexPoint.copyWithOrthogonalTranslation(buffer.keySet(), 0, -(1 + i));
-
-				int j = 0;
-				for (Color currentColor : buffer.values())
-				{
-					int h = transformed[j].getHorizontalOffset();
-					if (h < 0)
-						transformed[j] = transformed[j].transformedCopy(t1);
-					else if (this.width <= h)
-						transformed[j] = transformed[j].transformedCopy(t2);
-
-					this.occupiedTiles.put(transformed[j], currentColor);
-					j++;
-				}
-				buffer.clear();
+				int shift = HexPoint.horizontalOffset(dx, j - (1 + i)) - HexPoint.horizontalOffset(0, j);
+				if (0 < this.rowCounts[j])
+					shiftEnd = 1 + j;
+				this.moveRowDown(j, 1 + i, shift, wrapped);
 			}
 		}
 
+		if (0 < l)
+			this.didRemoveLines(lines[0]);
+		if (null == occupied)
+			this.didChange(null, null, shiftEnd, null);
+		else
+			this.didChange(Arrays.copyOf(occupied, m), Arrays.copyOf(lines, l), shiftEnd, wrapped.toSortedArray());
 		return l;
 	}
 
 
+	/**
+	 * Move a row down. The destination row must be empty.
+	 *
+	 * @param src The source row.
+	 * @param distance The number of rows to move.
+	 * @param shift The change in the horizontal offsets, wrapped at the
+	 * game board edges.
+	 * @param wrapped The wrapped points are added here if not null.
+	 */
+	private void moveRowDown(int src, int distance, int shift, HexPointSet wrapped)
+	{
+		int dst = src - distance;
+		int width = this.getWidth();
+		byte[] row = this.rows[src];
+		byte[] moved = this.writableRow(dst);
+		for (int h = 0; h < width; h++)
+		{
+			int movedH = (h + shift) % width;
+			if (movedH < 0)
+				movedH += width;
+			moved[movedH] = row[h];
+
+			if (null != wrapped && TilePalette.EMPTY != row[h] && movedH != h + shift)
+				wrapped.add(HexPoint.packOffsets(movedH, dst));
+		}
+
+		this.rowCounts[dst] = this.rowCounts[src];
+		this.stateHash ^= this.rowHash(src) ^ this.rowHash(dst);
+		this.clearRow(src);
+	}
+
+
 	@Override
 	public String toString()
 	{
-		return HexPoint.stringRepresentationForPoints(occupiedTiles.keySet(), 0, 0, width, height);
+		List<HexPoint> points = new ArrayList<HexPoint>();
+		for (int v = 0; v < this.getHeight(); v++)
+		{
+			for (int h = 0; h < this.getWidth(); h++)
+			{
+				if (this.isOccupied(h, v))
+					points.add(HexPoint.createWithOffsets(h, v));
+			}
+		}
+		return HexPoint.stringRepresentationForPoints(points, 0, 0, this.getWidth(), this.getHeight());
 	}
 }
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Game board wrapper for one writing thread and any number of reading
+ * threads.
+ *
+ * The writer modifies a private game board while holding a lock and then
+ * publishes an immutable snapshot of it. Readers only read the published
+ * snapshot through a volatile reference, so they neither lock nor wait, and
+ * they never see a partially applied change such as a half-finished line
+ * removal. The snapshots share unmodified rows with the private game board,
+ * so publishing one copies the table of rows but not the rows themselves.
+ * Each change thus costs time in proportion to the height of the game
+ * board; wrap a ChunkedGameBoard to keep that small on very tall boards.
+ *
+ * Each method call reads the snapshot that is current at the time. To make
+ * several reads from the same state, read them from snapshot(), or compare
+ * version() before and after the reads.
+ *
+ * Listeners are called by the writing thread after the new state has been
+ * published.
+ *
+ * @author tsnorri
+ * @see GameBoard#snapshot()
+ */
+public class ConcurrentGameBoard implements GameBoard
+{
+	private final Object writeLock = new Object();
+	private final GameBoard gameBoard;
+	private volatile GameBoard published;
+	// Guarded by writeLock.
+	private final List<GameBoardListener> listeners = new ArrayList<GameBoardListener>();
+	private GameBoardChange pendingChange;
+	private final GameBoardListener forwarder = new GameBoardListener()
+	{
+		@Override
+		public void gameBoardChanged(GameBoardChange change)
+		{
+			ConcurrentGameBoard.this.pendingChange = change;
+		}
+	};
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param gameBoard The game board to wrap. It must not be modified
+	 * directly after this.
+	 */
+	public ConcurrentGameBoard(GameBoard gameBoard)
+	{
+		this.gameBoard = gameBoard;
+		this.published = gameBoard.snapshot();
+	}
+
+
+	@Override
+	public int getWidth()
+	{
+		return this.published.getWidth();
+	}
+
+
+	@Override
+	public int getHeight()
+	{
+		return this.published.getHeight();
+	}
+
+
+	@Override
+	public boolean isValidAndVacant(HexPoint point)
+	{
+		return this.published.isValidAndVacant(point);
+	}
+
+
+	@Override
+	public boolean isValidAndVacant(int packed)
+	{
+		return this.published.isValidAndVacant(packed);
+	}
+
+
+	@Override
+	public boolean isOccupied(HexPoint point)
+	{
+		return this.published.isOccupied(point);
+	}
+
+
+	@Override
+	public boolean isOccupied(int packed)
+	{
+		return this.published.isOccupied(packed);
+	}
+
+
+	@Override
+	public int getOccupiedCount(int v)
+	{
+		return this.published.getOccupiedCount(v);
+	}
+
+
+	@Override
+	public int getColumnHeight(int h)
+	{
+		return this.published.getColumnHeight(h);
+	}
+
+
+	@Override
+	public int getMaxColumnHeight()
+	{
+		return this.published.getMaxColumnHeight();
+	}
+
+
+	@Override
+	public int getSurfaceProfile(int h)
+	{
+		return this.published.getSurfaceProfile(h);
+	}
+
+
+	@Override
+	public Color colorForOccupiedPoint(HexPoint point)
+	{
+		return this.published.colorForOccupiedPoint(point);
+	}
+
+
+	@Override
+	public byte getTile(HexPoint point)
+	{
+		return this.published.getTile(point);
+	}
+
+
+	@Override
+	public byte getTile(int packed)
+	{
+		return this.published.getTile(packed);
+	}
+
+
+	@Override
+	public boolean areAllValidAndVacant(Collection<? extends HexPoint> points)
+	{
+		return this.published.areAllValidAndVacant(points);
+	}
+
+
+	@Override
+	public boolean canPlace(Tetromino.Type type, int orientation, int w, int h)
+	{
+		return this.published.canPlace(type, orientation, w, h);
+	}
+
+
+	@Override
+	public boolean hasSpaceLeft(Collection<? extends HexPoint> points)
+	{
+		return this.published.hasSpaceLeft(points);
+	}
+
+
+	@Override
+	public boolean hasSpaceRight(Collection<? extends HexPoint> points)
+	{
+		return this.published.hasSpaceRight(points);
+	}
+
+
+	@Override
+	public boolean hasSpaceUnder(Collection<? extends HexPoint> points)
+	{
+		return this.published.hasSpaceUnder(points);
+	}
+
+
+	@Override
+	public long version()
+	{
+		return this.published.version();
+	}
+
+
+	@Override
+	public void addListener(GameBoardListener listener)
+	{
+		synchronized (this.writeLock)
+		{
+			if (this.listeners.isEmpty())
+				this.gameBoard.addListener(this.forwarder);
+			this.listeners.add(listener);
+		}
+	}
+
+
+	@Override
+	public void removeListener(GameBoardListener listener)
+	{
+		synchronized (this.writeLock)
+		{
+			if (this.listeners.remove(listener) && this.listeners.isEmpty())
+				this.gameBoard.removeListener(this.forwarder);
+		}
+	}
+
+
+	@Override
+	public long stateHash()
+	{
+		return this.published.stateHash();
+	}
+
+
+	/**
+	 * The current state. Does not block.
+	 *
+	 * @return An immutable game board.
+	 */
+	@Override
+	public GameBoard snapshot()
+	{
+		return this.published;
+	}
+
+
+	@Override
+	public GameBoard mutableCopy()
+	{
+		// Copying marks the rows shared, so it is done by the writer.
+		synchronized (this.writeLock)
+		{
+			return this.gameBoard.mutableCopy();
+		}
+	}
+
+
+	@Override
+	public int occupySpace(HexPoint[] points, Color color)
+	{
+		return this.occupySpace(points, TilePalette.indexForColor(color));
+	}
+
+
+	@Override
+	public int occupySpace(HexPoint[] points, byte tile)
+	{
+		synchronized (this.writeLock)
+		{
+			int retval = this.gameBoard.occupySpace(points, tile);
+			this.published = this.gameBoard.snapshot();
+
+			GameBoardChange change = this.pendingChange;
+			this.pendingChange = null;
+			if (null != change)
+			{
+				// Report this game board as the changed one.
+				change = new GameBoardChange(this, change.getVersion(), change.getOccupiedPoints(),
+					change.getRemovedLines(), change.getShiftEnd(), change.getWrappedPoints());
+				for (GameBoardListener listener : new ArrayList<GameBoardListener>(this.listeners))
+					listener.gameBoardChanged(change);
+			}
+			return retval;
+		}
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return this.published.toString();
+	}
+}
@@ -45,6 +45,16 @@ public interface GameBoard
 	public boolean isValidAndVacant(HexPoint point);
 
 
+	/**
+	 * Check whether the given packed point is valid and vacant.
+	 *
+	 * @param packed The packed point.
+	 * @return Boolean.
+	 * @see HexPoint#pack(int, int)
+	 */
+	public boolean isValidAndVacant(int packed);
+
+
 	/**
 	 * Check whether the given point is occupied.
 	 *
@@ -54,6 +64,57 @@ public interface GameBoard
 	public boolean isOccupied(HexPoint point);
 
 
+	/**
+	 * Check whether the given packed point is occupied.
+	 *
+	 * @param packed The packed point.
+	 * @return Boolean.
+	 * @see HexPoint#pack(int, int)
+	 */
+	public boolean isOccupied(int packed);
+
+
+	/**
+	 * The number of occupied points on the given row. The counts are
+	 * maintained as the points are occupied and vacated, so calling this
+	 * does not require scanning the row.
+	 *
+	 * @param v The row.
+	 * @return The number of points or zero if the row is not on the game board.
+	 */
+	public int getOccupiedCount(int v);
+
+
+	/**
+	 * The height of the given column, i.e. one more than the highest
+	 * occupied row among the points with the given horizontal offset. Since
+	 * odd rows are offset by half a point to the right, the columns zigzag.
+	 * The vertical trajectory follows them.
+	 *
+	 * @param h The horizontal offset.
+	 * @return The height or zero if the column is empty or not on the game board.
+	 */
+	public int getColumnHeight(int h);
+
+
+	/**
+	 * The greatest column height.
+	 *
+	 * @return The height.
+	 */
+	public int getMaxColumnHeight();
+
+
+	/**
+	 * The surface profile, i.e. the difference between the heights of the
+	 * given column and the next one on the right.
+	 *
+	 * @param h The horizontal offset.
+	 * @return getColumnHeight(h + 1) - getColumnHeight(h).
+	 */
+	public int getSurfaceProfile(int h);
+
+
 	/**
 	 * Check whether the given point is occupied and return its colour.
 	 *
@@ -63,6 +124,26 @@ public interface GameBoard
 	public Color colorForOccupiedPoint(HexPoint point);
 
 
+	/**
+	 * Check whether the given point is occupied and return its palette index.
+	 *
+	 * @param point The point.
+	 * @return The index if the point was occupied, otherwise TilePalette.EMPTY.
+	 * @see TilePalette
+	 */
+	public byte getTile(HexPoint point);
+
+
+	/**
+	 * Check whether the given point is occupied and return its palette index.
+	 *
+	 * @param packed The point, packed.
+	 * @return The index if the point was occupied, otherwise TilePalette.EMPTY.
+	 * @see HexPoint#pack(int, int)
+	 */
+	public byte getTile(int packed);
+
+
 	/**
 	 * Check whether all the given points are valid and vacant.
 	 *
@@ -72,6 +153,20 @@ public interface GameBoard
 	public boolean areAllValidAndVacant(Collection<? extends HexPoint> points);
 
 
+	/**
+	 * Check whether a tetromino in the given state would be on valid and
+	 * vacant points.
+	 *
+	 * @param type The type of the tetromino.
+	 * @param orientation The number of clockwise rotations.
+	 * @param w Location along the orthogonal X axis.
+	 * @param h Location along the orthogonal Y axis, i.e. the lowest row.
+	 * @return Boolean.
+	 * @see TetrominoShape
+	 */
+	public boolean canPlace(Tetromino.Type type, int orientation, int w, int h);
+
+
 	/**
 	 * Check whether there is space on left side of the given points.
 	 *
@@ -100,10 +195,90 @@ public interface GameBoard
 
 
 	/**
-	 * Mark all the points occupied and remove lines.
+	 * The version of the game board. The version is incremented every time
+	 * points are occupied.
+	 *
+	 * @return The version.
+	 */
+	public long version();
+
+
+	/**
+	 * Add a listener to be notified about the changes made by occupySpace.
+	 *
+	 * @param listener The listener.
+	 */
+	public void addListener(GameBoardListener listener);
+
+
+	/**
+	 * Remove a listener.
+	 *
+	 * @param listener The listener.
+	 */
+	public void removeListener(GameBoardListener listener);
+
+
+	/**
+	 * Zobrist hash of the occupied points. The hash is maintained as the
+	 * points are occupied, so game boards with the same occupied points have
+	 * the same hash regardless of the colours or the order of the moves.
+	 *
+	 * @return The hash.
+	 * @see ZobristKeys#cellKey(int, int)
+	 */
+	public long stateHash();
+
+
+	/**
+	 * An immutable copy of the game board. The copy shares the rows with this
+	 * game board; a row is copied when this game board modifies it.
+	 *
+	 * The rows themselves are not copied, but the copy still takes time and
+	 * space in proportion to the height of the game board: ConcreteGameBoard
+	 * and BitboardGameBoard copy a table with one entry per row, and
+	 * ChunkedGameBoard one with an entry per ChunkedGameBoard.CHUNK_ROWS rows.
+	 * The column heights are copied as well. Taking a snapshot on every step
+	 * of a very tall game board is therefore not free.
+	 *
+	 * @return The copy or this game board if it is immutable.
+	 */
+	public GameBoard snapshot();
+
+
+	/**
+	 * A mutable copy of the game board. The copy shares the rows with this
+	 * game board until either of them modifies a row. The cost is the same as
+	 * that of snapshot().
+	 *
+	 * @return The copy.
+	 */
+	public GameBoard mutableCopy();
+
+
+	/**
+	 * Mark all the points occupied and remove lines. Points outside the
+	 * game board, such as those of a tetromino that stopped above it, are
+	 * ignored and cannot be queried afterwards.
 	 *
 	 * @param points The points
+	 * @param color The colour of the points.
 	 * @return The number of removed lines.
+	 * @throws UnsupportedOperationException if the game board is immutable.
 	 */
 	public int occupySpace(HexPoint[] points, Color color);
+
+
+	/**
+	 * Mark all the points occupied and remove lines. Points outside the
+	 * game board, such as those of a tetromino that stopped above it, are
+	 * ignored and cannot be queried afterwards.
+	 *
+	 * @param points The points
+	 * @param tile The palette index of the points, not TilePalette.EMPTY.
+	 * @return The number of removed lines.
+	 * @throws UnsupportedOperationException if the game board is immutable.
+	 * @see TilePalette
+	 */
+	public int occupySpace(HexPoint[] points, byte tile);
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.util.Arrays;
+
+
+/**
+ * A change made by GameBoard.occupySpace.
+ *
+ * First the points are occupied. Then the full lines are removed and the rows
+ * between the removed lines are moved down, the rows between the first and
+ * the second removed line by one, the rows between the second and the third
+ * by two and so on. Some points end up outside the game board when the rows
+ * are moved and are wrapped to the other edge.
+ *
+ * @author tsnorri
+ */
+public final class GameBoardChange
+{
+	private final GameBoard gameBoard;
+	private final long version;
+	private final int[] occupiedPoints;
+	private final int[] removedLines;
+	private final int shiftEnd;
+	private final int[] wrappedPoints;
+	private final int dirtyStart;
+	private final int dirtyEnd;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param gameBoard The game board.
+	 * @param version The version of the game board after the change.
+	 * @param occupiedPoints The occupied points, packed.
+	 * @param removedLines The removed lines in ascending order.
+	 * @param shiftEnd One past the highest non-empty row that was moved.
+	 * @param wrappedPoints The wrapped points after moving, packed.
+	 */
+	GameBoardChange(GameBoard gameBoard, long version, int[] occupiedPoints, int[] removedLines, int shiftEnd, int[] wrappedPoints)
+	{
+		this.gameBoard = gameBoard;
+		this.version = version;
+		this.occupiedPoints = occupiedPoints;
+		this.removedLines = removedLines;
+		this.shiftEnd = shiftEnd;
+		this.wrappedPoints = wrappedPoints;
+
+		int start = Integer.MAX_VALUE;
+		int end = 0;
+		for (int point : occupiedPoints)
+		{
+			int v = HexPoint.packedY(point);
+			start = Math.min(start, v);
+			end = Math.max(end, 1 + v);
+		}
+		if (0 < removedLines.length)
+		{
+			start = Math.min(start, removedLines[0]);
+			end = Math.max(end, Math.max(1 + removedLines[removedLines.length - 1], shiftEnd));
+		}
+		if (end <= start)
+			start = end;
+
+		this.dirtyStart = start;
+		this.dirtyEnd = end;
+	}
+
+
+	/**
+	 * The game board that was changed.
+	 *
+	 * @return The game board.
+	 */
+	public GameBoard getGameBoard()
+	{
+		return this.gameBoard;
+	}
+
+
+	/**
+	 * The version of the game board after the change.
+	 *
+	 * @return The version.
+	 * @see GameBoard#version()
+	 */
+	public long getVersion()
+	{
+		return this.version;
+	}
+
+
+	/**
+	 * The points that were occupied before removing the lines. Points outside
+	 * the game board are not included.
+	 *
+	 * @return The packed points.
+	 * @see HexPoint#unpack(int)
+	 */
+	public int[] getOccupiedPoints()
+	{
+		return this.occupiedPoints.clone();
+	}
+
+
+	/**
+	 * The removed lines.
+	 *
+	 * @return The rows in ascending order.
+	 */
+	public int[] getRemovedLines()
+	{
+		return this.removedLines.clone();
+	}
+
+
+	/**
+	 * The first row that was moved down, before moving.
+	 *
+	 * @return The row.
+	 */
+	public int getShiftStart()
+	{
+		return (0 < this.removedLines.length ? 1 + this.removedLines[0] : this.shiftEnd);
+	}
+
+
+	/**
+	 * One past the last non-empty row that was moved down, before moving.
+	 *
+	 * @return The row.
+	 */
+	public int getShiftEnd()
+	{
+		return Math.max(this.shiftEnd, this.getShiftStart());
+	}
+
+
+	/**
+	 * The points that were wrapped to the other edge of the game board when
+	 * the rows were moved down.
+	 *
+	 * @return The packed points after moving.
+	 */
+	public int[] getWrappedPoints()
+	{
+		return this.wrappedPoints.clone();
+	}
+
+
+	/**
+	 * The first row whose contents may have changed.
+	 *
+	 * @return The row.
+	 */
+	public int getDirtyStart()
+	{
+		return this.dirtyStart;
+	}
+
+
+	/**
+	 * One past the last row whose contents may have changed.
+	 *
+	 * @return The row or getDirtyStart() if nothing was changed.
+	 */
+	public int getDirtyEnd()
+	{
+		return this.dirtyEnd;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("GameBoardChange version: %d removed lines: %s dirty rows: [%d, %d)",
+			this.version, Arrays.toString(this.removedLines), this.dirtyStart, this.dirtyEnd);
+	}
+}
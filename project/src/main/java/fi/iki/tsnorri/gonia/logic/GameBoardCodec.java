@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.awt.Color;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Compact binary representation of game boards.
+ *
+ * The format consists of
+ * <ul>
+ * <li>the format version as a byte,</li>
+ * <li>the width and the height,</li>
+ * <li>the palette: the number of entries followed by the index and the RGB
+ * value of each tile used on the game board,</li>
+ * <li>the rows from the bottom: the number of empty rows before the next
+ * non-empty row, the occupancy bitmask of that row, one bit per point
+ * starting from the least significant bit of the first byte, and the
+ * palette index of each occupied point from left to right,</li>
+ * <li>the number of empty rows at the top.</li>
+ * </ul>
+ * Numbers other than the palette entries are written as unsigned variable
+ * length integers, seven bits per byte. Since palette indices other than
+ * those of the tetrominoes are registered on demand, the colours are
+ * included so that they may be registered again when decoding. The
+ * registered colours take palette indices for the lifetime of the program,
+ * so decoding leaves RESERVED_TILES indices free for the program's own
+ * colours and fails if the new colours do not fit otherwise.
+ *
+ * @author tsnorri
+ */
+public final class GameBoardCodec
+{
+	/**
+	 * The version of the format.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	/**
+	 * The number of palette indices that colours read from the input may not
+	 * take.
+	 */
+	public static final int RESERVED_TILES = 64;
+
+
+	/**
+	 * Creates the game boards that are decoded.
+	 *
+	 * @author tsnorri
+	 */
+	public interface GameBoardFactory
+	{
+		/**
+		 * Create an empty game board.
+		 *
+		 * @param width Game board width, in [1, AbstractGameBoard.MAX_WIDTH].
+		 * @param height Game board height, in [1, AbstractGameBoard.MAX_HEIGHT].
+		 * @return The game board.
+		 */
+		public AbstractGameBoard instantiate(int width, int height);
+	}
+
+
+	private static final GameBoardFactory CHUNKED_FACTORY = new GameBoardFactory()
+	{
+		@Override
+		public AbstractGameBoard instantiate(int width, int height)
+		{
+			return new ChunkedGameBoard(width, height);
+		}
+	};
+
+
+	/**
+	 * Constructor.
+	 */
+	private GameBoardCodec()
+	{
+	}
+
+
+	private static void writeVarInt(DataOutput out, int value) throws IOException
+	{
+		while (0 != (value & ~0x7f))
+		{
+			out.writeByte(0x80 | (value & 0x7f));
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+
+	private static int readVarInt(DataInput in) throws IOException
+	{
+		int retval = 0;
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			int b = in.readUnsignedByte();
+			retval |= (b & 0x7f) << shift;
+			if (0 == (b & 0x80))
+				return retval;
+		}
+		throw new IOException("Invalid variable length integer.");
+	}
+
+
+	/**
+	 * Copy the palette indices of a row.
+	 *
+	 * @param gameBoard The game board.
+	 * @param v The row.
+	 * @param tiles The indices are stored here.
+	 */
+	private static void readRow(GameBoard gameBoard, int v, byte[] tiles)
+	{
+		if (gameBoard instanceof AbstractGameBoard)
+			((AbstractGameBoard) gameBoard).getRowTiles(v, tiles);
+		else
+		{
+			for (int h = 0; h < tiles.length; h++)
+				tiles[h] = gameBoard.getTile(HexPoint.packOffsets(h, v));
+		}
+	}
+
+
+	/**
+	 * Write a game board.
+	 *
+	 * The game board is read several times. Game boards other than
+	 * AbstractGameBoards, such as ConcurrentGameBoard, are encoded from their
+	 * snapshots.
+	 *
+	 * @param gameBoard The game board.
+	 * @param out The output.
+	 * @throws IOException
+	 * @see GameBoard#snapshot()
+	 */
+	public static void encode(GameBoard gameBoard, DataOutput out) throws IOException
+	{
+		if (!(gameBoard instanceof AbstractGameBoard))
+			gameBoard = gameBoard.snapshot();
+
+		int width = gameBoard.getWidth();
+		int height = gameBoard.getHeight();
+		out.writeByte(FORMAT_VERSION);
+		writeVarInt(out, width);
+		writeVarInt(out, height);
+
+		// Collect the palette.
+		byte[] tiles = new byte[width];
+		boolean[] used = new boolean[256];
+		int count = 0;
+		for (int v = 0; v < height; v++)
+		{
+			if (0 == gameBoard.getOccupiedCount(v))
+				continue;
+
+			readRow(gameBoard, v, tiles);
+			for (int h = 0; h < width; h++)
+			{
+				int tile = tiles[h] & 0xff;
+				if (TilePalette.EMPTY != tile && !used[tile])
+				{
+					used[tile] = true;
+					count++;
+				}
+			}
+		}
+
+		writeVarInt(out, count);
+		for (int i = 0; i < used.length; i++)
+		{
+			if (used[i])
+			{
+				out.writeByte(i);
+				out.writeInt(TilePalette.colorForIndex((byte) i).getRGB());
+			}
+		}
+
+		// Write the rows.
+		byte[] mask = new byte[(width + 7) >>> 3];
+		int empty = 0;
+		for (int v = 0; v < height; v++)
+		{
+			if (0 == gameBoard.getOccupiedCount(v))
+			{
+				empty++;
+				continue;
+			}
+
+			writeVarInt(out, empty);
+			empty = 0;
+
+			readRow(gameBoard, v, tiles);
+			Arrays.fill(mask, (byte) 0);
+			for (int h = 0; h < width; h++)
+			{
+				if (TilePalette.EMPTY != tiles[h])
+					mask[h >>> 3] |= (1 << (h & 7));
+			}
+			out.write(mask);
+
+			for (int h = 0; h < width; h++)
+			{
+				if (TilePalette.EMPTY != tiles[h])
+					out.writeByte(tiles[h]);
+			}
+		}
+		writeVarInt(out, empty);
+	}
+
+
+	/**
+	 * Read a game board.
+	 *
+	 * @param in The input.
+	 * @return A ChunkedGameBoard, so that the memory used depends on the
+	 * stored rows rather than on the size given in the input.
+	 * @throws IOException if the input is not a valid game board or its
+	 * colours do not fit in the palette.
+	 */
+	public static GameBoard decode(DataInput in) throws IOException
+	{
+		return decode(in, CHUNKED_FACTORY);
+	}
+
+
+	/**
+	 * Read a game board.
+	 *
+	 * @param in The input.
+	 * @param factory Creates the game board once its size has been read.
+	 * @return The game board created by the factory.
+	 * @throws IOException if the input is not a valid game board or its
+	 * colours do not fit in the palette.
+	 * @throws IllegalArgumentException if the factory does not return an
+	 * empty game board of the given size.
+	 */
+	public static GameBoard decode(DataInput in, GameBoardFactory factory) throws IOException
+	{
+		int formatVersion = in.readUnsignedByte();
+		if (FORMAT_VERSION != formatVersion)
+			throw new IOException(String.format("Unsupported format version %d.", formatVersion));
+
+		// Check the size before allocating anything.
+		int width = readVarInt(in);
+		int height = readVarInt(in);
+		if (width <= 0 || height <= 0 || AbstractGameBoard.MAX_WIDTH < width || AbstractGameBoard.MAX_HEIGHT < height)
+			throw new IOException("Invalid game board size.");
+
+		AbstractGameBoard retval = factory.instantiate(width, height);
+		if (width != retval.getWidth() || height != retval.getHeight() || 0 != retval.getMaxColumnHeight())
+			throw new IllegalArgumentException("The factory must return an empty game board of the given size.");
+
+		// Map the stored indices to the ones of this program.
+		int count = readVarInt(in);
+		if (count < 0 || 255 < count)
+			throw new IOException("Invalid palette size.");
+
+		int[] storedIndices = new int[count];
+		Color[] colors = new Color[count];
+		boolean[] defined = new boolean[256];
+		for (int i = 0; i < count; i++)
+		{
+			storedIndices[i] = in.readUnsignedByte();
+			colors[i] = new Color(in.readInt());
+			if (TilePalette.EMPTY == storedIndices[i] || defined[storedIndices[i]])
+				throw new IOException("Invalid palette index.");
+			defined[storedIndices[i]] = true;
+		}
+
+		byte[] indices = new byte[count];
+		if (!TilePalette.indicesForColors(colors, indices, RESERVED_TILES))
+			throw new IOException("Too many new colours.");
+
+		byte[] palette = new byte[256];
+		for (int i = 0; i < count; i++)
+			palette[storedIndices[i]] = indices[i];
+
+		// Read the rows.
+		byte[] mask = new byte[(width + 7) >>> 3];
+		int v = readVarInt(in);
+		if (v < 0 || height < v)
+			throw new IOException("Too many rows.");
+		while (v < height)
+		{
+			in.readFully(mask);
+			int occupied = 0;
+			for (int h = 0; h < width; h++)
+			{
+				if (0 != (mask[h >>> 3] & (1 << (h & 7))))
+				{
+					byte tile = palette[in.readUnsignedByte()];
+					if (TilePalette.EMPTY == tile)
+						throw new IOException(String.format("Undefined tile at (%d, %d).", h, v));
+					retval.restoreTile(h, v, tile);
+					occupied++;
+				}
+			}
+
+			if (0 == occupied || width == occupied)
+				throw new IOException(String.format("Row %d is empty or full.", v));
+
+			int empty = readVarInt(in);
+			if (empty < 0 || height - v - 1 < empty)
+				throw new IOException("Too many rows.");
+			v += 1 + empty;
+		}
+		return retval;
+	}
+}
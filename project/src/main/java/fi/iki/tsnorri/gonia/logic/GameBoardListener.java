@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+/**
+ * Game board listener.
+ *
+ * @author tsnorri
+ */
+public interface GameBoardListener
+{
+	/**
+	 * Called after points have been occupied and the lines removed.
+	 *
+	 * @param change What was changed.
+	 */
+	public void gameBoardChanged(GameBoardChange change);
+}
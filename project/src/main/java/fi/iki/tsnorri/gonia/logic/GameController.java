@@ -9,6 +9,9 @@
  */
 package fi.iki.tsnorri.gonia.logic;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Set;
 import org.javatuples.Pair;
 
@@ -28,6 +31,25 @@ public class GameController
 	private int lines;
 	private int steps;
 	private int score;
+	// The trajectory preview and the state it was calculated for.
+	private Set<HexPoint> trajectoryPoints;
+	private boolean trajectoryPointsValid;
+	private Tetromino.Type trajectoryTetrominoType;
+	private int trajectoryOrientation;
+	private int trajectoryW;
+	private int trajectoryH;
+	private Trajectory.Type trajectoryType;
+	private long trajectoryBoardVersion;
+	// The landing preview and the state it was calculated for.
+	private LandingSolver landingSolver;
+	private int[] landingLocations;
+	private Map<Trajectory.Type, Set<HexPoint>> landingPoints;
+	private boolean landingPointsValid;
+	private Tetromino.Type landingTetrominoType;
+	private int landingOrientation;
+	private int landingW;
+	private int landingH;
+	private long landingBoardVersion;
 
 
 	/**
@@ -40,7 +62,10 @@ public class GameController
 	public GameController(TetrominoSource tetrominoSource, int width, int height)
 	{
 		this.gameBoard = new ConcreteGameBoard(width, 4 + height);
+		HexPoint.ensureCanonicalRange(width, 4 + height);
 		this.trajectory = new Trajectory();
+		this.landingSolver = new LandingSolver(width);
+		this.landingLocations = new int[Trajectory.Type.values().length];
 		this.tetrominoSource = tetrominoSource;
 		this.tetrominoSource.createTetromino();
 	}
@@ -61,8 +86,10 @@ public class GameController
 			currentTetromino = tetrominoSource.getTetromino();
 			tetrominoSource.createTetromino();
 
+			// Place the origin of the base points on the spawn row.
 			int width = gameBoard.getWidth();
-			currentTetromino.moveTo(width / 2, gameBoard.getHeight() - 4);
+			int h = gameBoard.getHeight() - 4 + TetrominoShape.getOriginOffset(currentTetromino.getType());
+			currentTetromino.moveTo(width / 2, h);
 		}
 		else
 		{
@@ -76,6 +103,7 @@ public class GameController
 					retval = false;
 				else
 					addToScore(res, 0);
+				tetrominoSource.recycleTetromino(currentTetromino);
 				currentTetromino = null;
 			}
 		}
@@ -104,6 +132,7 @@ public class GameController
 				this.lines += currentLines;
 				addToScore(currentLines, distance);
 			}
+			tetrominoSource.recycleTetromino(currentTetromino);
 			currentTetromino = null;
 		}
 		return retval;
@@ -206,16 +235,127 @@ public class GameController
 
 
 	/**
-	 * The points on the trajectory of the current tetromino.
+	 * Check whether the trajectory preview was calculated for the current
+	 * state of the game.
 	 *
-	 * @return A set of points.
+	 * @return Boolean.
+	 */
+	private boolean isTrajectoryPreviewCurrent()
+	{
+		if (!trajectoryPointsValid)
+			return false;
+		if (null == currentTetromino)
+			return (null == trajectoryTetrominoType);
+
+		return (currentTetromino.getType() == trajectoryTetrominoType &&
+			currentTetromino.getOrientation() == trajectoryOrientation &&
+			currentTetromino.getW() == trajectoryW &&
+			currentTetromino.getH() == trajectoryH &&
+			trajectory.getPreferredType() == trajectoryType &&
+			gameBoard.version() == trajectoryBoardVersion);
+	}
+
+
+	/**
+	 * The points on the trajectory of the current tetromino. The points are
+	 * only calculated again if the tetromino, the preferred trajectory or the
+	 * game board has changed since the previous call.
+	 *
+	 * @return An unmodifiable set of points or null.
 	 */
 	public Set<HexPoint> trajectoryPoints()
 	{
-		Set<HexPoint> retval = null;
-		if (null != currentTetromino)
-			retval = trajectory.remainingPoints(currentTetromino.getPoints(), gameBoard);
-		return retval;
+		if (!isTrajectoryPreviewCurrent())
+		{
+			trajectoryPoints = null;
+			trajectoryTetrominoType = null;
+			if (null != currentTetromino)
+			{
+				Set<HexPoint> points = trajectory.remainingPoints(currentTetromino.getPoints(), gameBoard);
+				if (null != points)
+					trajectoryPoints = Collections.unmodifiableSet(points);
+
+				trajectoryTetrominoType = currentTetromino.getType();
+				trajectoryOrientation = currentTetromino.getOrientation();
+				trajectoryW = currentTetromino.getW();
+				trajectoryH = currentTetromino.getH();
+			}
+			trajectoryType = trajectory.getPreferredType();
+			trajectoryBoardVersion = gameBoard.version();
+			trajectoryPointsValid = true;
+		}
+		return trajectoryPoints;
+	}
+
+
+	/**
+	 * Check whether the landing preview was calculated for the current
+	 * state of the game.
+	 *
+	 * @return Boolean.
+	 */
+	private boolean isLandingPreviewCurrent()
+	{
+		if (!landingPointsValid)
+			return false;
+		if (null == currentTetromino)
+			return (null == landingTetrominoType);
+
+		return (currentTetromino.getType() == landingTetrominoType &&
+			currentTetromino.getOrientation() == landingOrientation &&
+			currentTetromino.getW() == landingW &&
+			currentTetromino.getH() == landingH &&
+			gameBoard.version() == landingBoardVersion);
+	}
+
+
+	/**
+	 * The points where the current tetromino would land on each of the
+	 * trajectories. The landing locations are found together with
+	 * LandingSolver, which crosses the empty rows without checking them and
+	 * shares the height of the occupied rows between the trajectories. The
+	 * points are only calculated again if the tetromino or the game board has
+	 * changed since the previous call.
+	 *
+	 * @return An unmodifiable map from each trajectory to an unmodifiable set
+	 * of points, or null if there is no current tetromino.
+	 * @see LandingSolver#landingLocations(GameBoard, Tetromino.Type, int, int, int, int[])
+	 */
+	public Map<Trajectory.Type, Set<HexPoint>> landingPoints()
+	{
+		if (!isLandingPreviewCurrent())
+		{
+			landingPoints = null;
+			landingTetrominoType = null;
+			if (null != currentTetromino)
+			{
+				Tetromino.Type type = currentTetromino.getType();
+				int orientation = currentTetromino.getOrientation();
+				landingSolver.landingLocations(gameBoard, type, orientation, currentTetromino.getW(), currentTetromino.getH(), landingLocations);
+
+				Map<Trajectory.Type, Set<HexPoint>> points = new EnumMap<Trajectory.Type, Set<HexPoint>>(Trajectory.Type.class);
+				for (Trajectory.Type trajectoryType : Trajectory.Type.values())
+				{
+					int location = landingLocations[trajectoryType.ordinal()];
+					int w = HexPoint.packedHorizontalOffset(location);
+					int h = HexPoint.packedY(location);
+					TetrominoShape shape = TetrominoShape.valueOf(type, orientation, h);
+					HexPointSet set = new HexPointSet(shape.getPointCount());
+					for (int i = 0; i < shape.getPointCount(); i++)
+						set.add(HexPoint.packOffsets(w + shape.getHorizontalOffset(i), h + shape.getVerticalOffset(i)));
+					points.put(trajectoryType, Collections.unmodifiableSet(set));
+				}
+				landingPoints = Collections.unmodifiableMap(points);
+
+				landingTetrominoType = type;
+				landingOrientation = orientation;
+				landingW = currentTetromino.getW();
+				landingH = currentTetromino.getH();
+			}
+			landingBoardVersion = gameBoard.version();
+			landingPointsValid = true;
+		}
+		return landingPoints;
 	}
 
 
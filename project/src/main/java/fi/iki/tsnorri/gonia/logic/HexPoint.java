@@ -16,6 +16,15 @@ import java.util.Collection;
 /**
  * A point in hexagonal coordinate system.
  *
+ * The points may also be handled in a packed form, a single int that holds
+ * the Y co-ordinate in the upper 18 bits and 2x + y in the lower 14 bits.
+ * Translating a packed point is an addition, and comparing packed points
+ * with the relational operators gives the same order as Comparator. The Y
+ * co-ordinate of a packed point must be in [MIN_PACKED_Y, MAX_PACKED_Y] and
+ * the horizontal offset in [-MAX_PACKED_HORIZONTAL_OFFSET,
+ * MAX_PACKED_HORIZONTAL_OFFSET]; other points are packed incorrectly without
+ * an error.
+ *
  * @author tsnorri
  */
 public class HexPoint implements Cloneable
@@ -74,22 +83,85 @@ public class HexPoint implements Cloneable
 		}
 	}
 
-	private static Factory<HexPoint> factory;
+	private static final int PACKED_LOW_BITS = 14;
+	private static final int PACKED_LOW_MASK = (1 << PACKED_LOW_BITS) - 1;
+	private static final int PACKED_LOW_BIAS = 1 << (PACKED_LOW_BITS - 1);
+	private static final int CANONICAL_MARGIN = 4;
+
+	/**
+	 * The greatest absolute value of a horizontal offset that may be packed.
+	 */
+	public static final int MAX_PACKED_HORIZONTAL_OFFSET = (PACKED_LOW_BIAS >> 1) - 1;
+
+	/**
+	 * The least Y co-ordinate that may be packed.
+	 */
+	public static final int MIN_PACKED_Y = Integer.MIN_VALUE >> PACKED_LOW_BITS;
+
+	/**
+	 * The greatest Y co-ordinate that may be packed.
+	 */
+	public static final int MAX_PACKED_Y = Integer.MAX_VALUE >> PACKED_LOW_BITS;
+	private static final int MAX_CANONICAL_POINTS = 1 << 16;
+	private static volatile CanonicalPoints canonicalPoints = new CanonicalPoints(16, 32);
 	protected int x;
 	protected int y;
 	protected int z;
+	// Hash of the packed form, updated with the co-ordinates.
+	protected int hash;
 
 
-	static
+	/**
+	 * Shared instances for the points inside a rectangle of orthogonal
+	 * co-ordinates. The table is immutable; a larger one replaces it when
+	 * needed.
+	 *
+	 * @author tsnorri
+	 */
+	private static final class CanonicalPoints
 	{
-		factory = new Factory<HexPoint>()
+		final int width;
+		final int height;
+		final int stride;
+		final HexPoint[] points;
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param width Width of the covered game board.
+		 * @param height Height of the covered game board.
+		 */
+		CanonicalPoints(int width, int height)
 		{
-			@Override
-			public HexPoint instantiate(int x, int y, int z)
+			this.width = width;
+			this.height = height;
+			this.stride = width + 2 * CANONICAL_MARGIN;
+			this.points = new HexPoint[this.stride * (height + 2 * CANONICAL_MARGIN)];
+
+			for (int v = -CANONICAL_MARGIN; v < height + CANONICAL_MARGIN; v++)
 			{
-				return new HexPoint(x, y, z);
+				for (int h = -CANONICAL_MARGIN; h < width + CANONICAL_MARGIN; h++)
+					this.points[this.index(h, v)] = new HexPoint(h - v / 2, v);
 			}
-		};
+		}
+
+
+		/**
+		 * Table index of the point with the given orthogonal co-ordinates.
+		 *
+		 * @param h Horizontal distance.
+		 * @param v Vertical distance.
+		 * @return The index or -1 if the point is not covered.
+		 */
+		int index(int h, int v)
+		{
+			int i = h + CANONICAL_MARGIN;
+			int j = v + CANONICAL_MARGIN;
+			if (0 <= i && i < this.stride && 0 <= j && j < this.height + 2 * CANONICAL_MARGIN)
+				return j * this.stride + i;
+			return -1;
+		}
 	}
 
 
@@ -107,6 +179,81 @@ public class HexPoint implements Cloneable
 		this.x = x;
 		this.y = y;
 		this.z = z;
+		this.hash = hashPacked(pack(x, y));
+	}
+
+
+	/**
+	 * Constructor for co-ordinates known to be valid.
+	 *
+	 * @param x Hexagonal X co-ordinate.
+	 * @param y Hexagonal Y co-ordinate.
+	 */
+	private HexPoint(int x, int y)
+	{
+		this.x = x;
+		this.y = y;
+		this.z = -(x + y);
+		this.hash = hashPacked(pack(x, y));
+	}
+
+
+	/**
+	 * Make valueOf return shared instances for the points of a game board of
+	 * the given size. Very large game boards are not covered. The game boards
+	 * do not call this; the table is shared by the whole program and replacing
+	 * it is synchronized, so it should be called once when the size of the
+	 * game board is known.
+	 *
+	 * @param width Game board width.
+	 * @param height Game board height.
+	 */
+	public static synchronized void ensureCanonicalRange(int width, int height)
+	{
+		CanonicalPoints current = canonicalPoints;
+		width = Math.max(width, current.width);
+		height = Math.max(height, current.height);
+		if ((width != current.width || height != current.height)
+			&& (long) (width + 2 * CANONICAL_MARGIN) * (height + 2 * CANONICAL_MARGIN) <= MAX_CANONICAL_POINTS)
+		{
+			canonicalPoints = new CanonicalPoints(width, height);
+		}
+	}
+
+
+	/**
+	 * A point with the given co-ordinates. Points on game boards covered by
+	 * ensureCanonicalRange are shared and may be compared by identity.
+	 *
+	 * @param x Hexagonal X co-ordinate.
+	 * @param y Hexagonal Y co-ordinate.
+	 * @param z Hexagonal Z co-ordinate.
+	 * @return The point.
+	 */
+	public static HexPoint valueOf(int x, int y, int z)
+	{
+		if (0 != x + y + z)
+			throw new IllegalArgumentException("The sum of coordinates must be zero.");
+		return valueOfOffsets(x + y / 2, y);
+	}
+
+
+	/**
+	 * A point with the given orthogonal co-ordinates. Points on game boards
+	 * covered by ensureCanonicalRange are shared and may be compared by
+	 * identity.
+	 *
+	 * @param h Horizontal distance.
+	 * @param v Vertical distance.
+	 * @return The point.
+	 */
+	public static HexPoint valueOfOffsets(int h, int v)
+	{
+		CanonicalPoints table = canonicalPoints;
+		int idx = table.index(h, v);
+		if (-1 == idx)
+			return new HexPoint(h - v / 2, v);
+		return table.points[idx];
 	}
 
 
@@ -119,7 +266,7 @@ public class HexPoint implements Cloneable
 	 */
 	public static HexPoint createWithOffsets(int h, int v)
 	{
-		return factory.createWithOffsets(h, v);
+		return valueOfOffsets(h, v);
 	}
 
 
@@ -162,16 +309,190 @@ public class HexPoint implements Cloneable
 	 * @return The distance.
 	 */
 	public int getHorizontalOffset()
+	{
+		return horizontalOffset(this.x, this.y);
+	}
+
+
+	/**
+	 * Distance on the orthogonal X axis.
+	 *
+	 * @param x Hexagonal X co-ordinate.
+	 * @param y Hexagonal Y co-ordinate.
+	 * @return The distance.
+	 */
+	public static int horizontalOffset(int x, int y)
 	{
 		int retval = 0;
-		if (this.y > 0)
-			retval = +this.x + this.y / 2;
+		if (y > 0)
+			retval = x + y / 2;
 		else
-			retval = -this.z + this.y / 2;
+			retval = x + y + y / 2;
 		return retval;
 	}
 
 
+	/**
+	 * Pack hexagonal co-ordinates into an int.
+	 *
+	 * @param x Hexagonal X co-ordinate.
+	 * @param y Hexagonal Y co-ordinate.
+	 * @return The packed point.
+	 */
+	public static int pack(int x, int y)
+	{
+		return (y << PACKED_LOW_BITS) + (2 * x + y + PACKED_LOW_BIAS);
+	}
+
+
+	/**
+	 * Pack orthogonal co-ordinates into an int.
+	 *
+	 * @param h Horizontal distance.
+	 * @param v Vertical distance.
+	 * @return The packed point.
+	 */
+	public static int packOffsets(int h, int v)
+	{
+		return pack(h - v / 2, v);
+	}
+
+
+	/**
+	 * The point in packed form.
+	 *
+	 * @return The packed point.
+	 */
+	public int pack()
+	{
+		return pack(this.x, this.y);
+	}
+
+
+	/**
+	 * Create a point from its packed form.
+	 *
+	 * @param packed The packed point.
+	 * @return The created point.
+	 */
+	public static HexPoint unpack(int packed)
+	{
+		int x = packedX(packed);
+		int y = packedY(packed);
+		return valueOfOffsets(x + y / 2, y);
+	}
+
+
+	/**
+	 * X co-ordinate of a packed point.
+	 *
+	 * @param packed The packed point.
+	 * @return The co-ordinate.
+	 */
+	public static int packedX(int packed)
+	{
+		return ((packed & PACKED_LOW_MASK) - PACKED_LOW_BIAS - packedY(packed)) / 2;
+	}
+
+
+	/**
+	 * Y co-ordinate of a packed point.
+	 *
+	 * @param packed The packed point.
+	 * @return The co-ordinate.
+	 */
+	public static int packedY(int packed)
+	{
+		return packed >> PACKED_LOW_BITS;
+	}
+
+
+	/**
+	 * Z co-ordinate of a packed point.
+	 *
+	 * @param packed The packed point.
+	 * @return The co-ordinate.
+	 */
+	public static int packedZ(int packed)
+	{
+		return -(packedX(packed) + packedY(packed));
+	}
+
+
+	/**
+	 * Distance of a packed point on the orthogonal X axis.
+	 *
+	 * @param packed The packed point.
+	 * @return The distance.
+	 */
+	public static int packedHorizontalOffset(int packed)
+	{
+		return horizontalOffset(packedX(packed), packedY(packed));
+	}
+
+
+	/**
+	 * Compare packed points in the order used by Comparator.
+	 *
+	 * @param lhs The first packed point.
+	 * @param rhs The second packed point.
+	 * @return A negative number, zero or a positive number.
+	 */
+	public static int comparePacked(int lhs, int rhs)
+	{
+		return (lhs < rhs ? -1 : (lhs == rhs ? 0 : 1));
+	}
+
+
+	/**
+	 * Hash code of a packed point. The bits are mixed with the MurmurHash3
+	 * finalizer so that neighbouring points do not end up in neighbouring
+	 * buckets when the hash is masked.
+	 *
+	 * @param packed The packed point.
+	 * @return The hash code.
+	 */
+	public static int hashPacked(int packed)
+	{
+		int h = packed;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+
+	/**
+	 * A translation in packed form. Adding the returned value to a packed
+	 * point translates it by (dx, dy, -(dx + dy)).
+	 *
+	 * @param dx Translation along the hexagonal X axis.
+	 * @param dy Translation along the hexagonal Y axis.
+	 * @return The packed translation.
+	 */
+	public static int packedTranslation(int dx, int dy)
+	{
+		return (dy << PACKED_LOW_BITS) + 2 * dx + dy;
+	}
+
+
+	/**
+	 * A translation along the orthogonal axes in packed form.
+	 *
+	 * @param dw Distance on the orthogonal X axis.
+	 * @param dh Distance on the orthogonal Y axis.
+	 * @param moveRight Whether the translation should shift if dh is odd.
+	 * @return The packed translation.
+	 * @see #translationTransformation(int, int, boolean)
+	 */
+	public static int packedOrthogonalTranslation(int dw, int dh, boolean moveRight)
+	{
+		return packedTranslation(translationX(dw, dh, moveRight), dh);
+	}
+
+
 	/**
 	 * Copy the points and move them on the orthogonal axes.
 	 *
@@ -196,7 +517,7 @@ public class HexPoint implements Cloneable
 	 */
 	public static HexPoint[] copyWithOrthogonalTranslation(Collection<? extends HexPoint> points, int dw, int dh)
 	{
-		int[][] transformation = translationTransformationForPoints(points, dw, dh);
+		HexTransform transformation = translationTransformationForPoints(points, dw, dh);
 		HexPoint[] retval = new HexPoint[points.size()];
 		int i = 0;
 		for (HexPoint point : points)
@@ -230,78 +551,78 @@ public class HexPoint implements Cloneable
 	 */
 	public static void applyOrthogonalTranslation(Collection<MutableHexPoint> points, int dw, int dh)
 	{
-		int[][] transformation = translationTransformationForPoints(points, dw, dh);
+		HexTransform transformation = translationTransformationForPoints(points, dw, dh);
 		for (MutableHexPoint point : points)
 			point.transform(transformation);
 	}
 
 
 	/**
-	 * Create a transformation matrix for moving the points on the orthogonal
-	 * axes.
+	 * Create a transformation for moving the points on the orthogonal axes.
 	 *
 	 * @param dw Distance on the orthogonal X axis.
 	 * @param dh Distance on the orthogonal Y axis.
 	 * @param moveRight Whether the transformation should shift if dh is odd.
-	 * @return The transformation matrix.
+	 * @return The transformation.
 	 */
-	static int[][] translationTransformation(int dw, int dh, boolean moveRight)
+	static HexTransform translationTransformation(int dw, int dh, boolean moveRight)
 	{
-		int dx = 0, dy = 0, dz = 0;
+		int dx = translationX(dw, dh, moveRight);
+		int dy = dh;
+		return HexTransform.translation(dx, dy, -(dx + dy));
+	}
 
-		// Horizontal
-		dx += dw;
-		dz -= dw;
 
-		// Vertical
-		dy += dh;
-		dx -= dh / 2;
-		dz -= dh / 2;
+	/**
+	 * The hexagonal X component of a translation along the orthogonal axes.
+	 * The Y component equals dh and the Z component is determined by the
+	 * other two.
+	 *
+	 * @param dw Distance on the orthogonal X axis.
+	 * @param dh Distance on the orthogonal Y axis.
+	 * @param moveRight Whether the translation should shift if dh is odd.
+	 * @return The X component.
+	 */
+	static int translationX(int dw, int dh, boolean moveRight)
+	{
+		int dx = dw - dh / 2;
 		int remainder = dh % 2;
-		if (0 < remainder)
-		{
-			if (moveRight)
-				dz -= 1;
-			else
-				dx -= 1;
-		}
-		else if (0 > remainder)
-		{
-			if (moveRight)
-				dx += 1;
-			else
-				dz += 1;
-		}
+		if (0 < remainder && !moveRight)
+			dx -= 1;
+		else if (0 > remainder && moveRight)
+			dx += 1;
+		return dx;
+	}
 
-		int[][] transform =
-		{
-			{1, 0, 0, 0},
-			{0, 1, 0, 0},
-			{0, 0, 1, 0},
-			{dx, dy, dz, 1}
-		};
 
-		return transform;
+	/**
+	 * Whether a translation of the given points along the orthogonal axes
+	 * should shift right if the vertical distance is odd.
+	 *
+	 * @param points The points.
+	 * @return Boolean.
+	 */
+	static boolean shouldMoveRight(Collection<? extends HexPoint> points)
+	{
+		int min = Integer.MAX_VALUE;
+		for (HexPoint point : points)
+			min = Math.min(min, point.getY());
+		return (0 == min % 2);
 	}
 
 
 	/**
-	 * Create a transformation matrix for moving the points on the orthogonal
-	 * axes according to the least Y co-ordinate.
+	 * Create a transformation for moving the points on the orthogonal axes
+	 * according to the least Y co-ordinate.
 	 *
 	 * @param dw Distance on the orthogonal X axis.
 	 * @param dh Distance on the orthogonal Y axis.
 	 * @param points The transformed points.
-	 * @return The transformation matrix.
+	 * @return The transformation.
 	 */
-	static int[][] translationTransformationForPoints(Collection<? extends HexPoint> points, int dw, int dh)
+	static HexTransform translationTransformationForPoints(Collection<? extends HexPoint> points, int dw, int dh)
 	{
-		int min = Integer.MAX_VALUE;
-		for (HexPoint point : points)
-			min = Math.min(min, point.getY());
-
-		int transformation[][] = translationTransformation(dw, dh, (0 == min % 2 ? true : false));
-		return transformation;
+		return translationTransformation(dw, dh, shouldMoveRight(points));
 	}
 
 
@@ -323,11 +644,7 @@ public class HexPoint implements Cloneable
 	@Override
 	public int hashCode()
 	{
-		int hash = 7;
-		hash = 1 * hash + this.x;
-		hash = 83 * hash + this.y;
-		hash = 167 * hash + this.z;
-		return hash;
+		return this.hash;
 	}
 
 
@@ -335,34 +652,27 @@ public class HexPoint implements Cloneable
 	 * Apply a transformation.
 	 *
 	 * @param transformation The transformation, a 4x4-matrix.
+	 * @see HexTransform#fromMatrix(int[][])
 	 */
 	protected void _transform(int transformation[][])
 	{
-		if (!(4 == transformation.length && 4 == transformation[0].length))
-			throw new IllegalArgumentException("Transformation matrix must be 4×4.");
-
-		if (!(0 == transformation[3][0] + transformation[3][1] + transformation[3][2]))
-			throw new IllegalArgumentException("The sum of translations must be zero.");
-
-		int src[] =
-		{
-			this.x, this.y, this.z, 1
-		};
-		int dst[] =
-		{
-			0, 0, 0, 0
-		};
+		this._transform(HexTransform.fromMatrix(transformation));
+	}
 
-		for (int i = 0; i < transformation.length; i++)
-		{
-			for (int j = 0; j < transformation[i].length; j++)
-				dst[j] += src[i] * transformation[i][j];
-		}
 
-		assert 1 == dst[3];
-		this.x = dst[0];
-		this.y = dst[1];
-		this.z = dst[2];
+	/**
+	 * Apply a transformation.
+	 *
+	 * @param transformation The transformation.
+	 */
+	protected void _transform(HexTransform transformation)
+	{
+		int x = transformation.applyX(this.x, this.y);
+		int y = transformation.applyY(this.x, this.y);
+		this.x = x;
+		this.y = y;
+		this.z = -(x + y);
+		this.hash = hashPacked(pack(x, y));
 	}
 
 
@@ -374,20 +684,21 @@ public class HexPoint implements Cloneable
 	 */
 	public HexPoint transformedCopy(int transformation[][])
 	{
-		HexPoint retval = new HexPoint(this.x, this.y, this.z);
-		retval._transform(transformation);
-		return retval;
+		return this.transformedCopy(HexTransform.fromMatrix(transformation));
 	}
 
 
 	/**
-	 * Call super's clone.
+	 * Copy a point and transform.
 	 *
-	 * @throws CloneNotSupportedException
+	 * @param transformation The transformation.
+	 * @return The created point.
 	 */
-	protected HexPoint _clone() throws CloneNotSupportedException
+	public HexPoint transformedCopy(HexTransform transformation)
 	{
-		return (HexPoint) super.clone();
+		int x = transformation.applyX(this.x, this.y);
+		int y = transformation.applyY(this.x, this.y);
+		return valueOfOffsets(x + y / 2, y);
 	}
 
 
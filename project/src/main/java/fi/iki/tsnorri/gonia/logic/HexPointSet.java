@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A hash set of packed points. Uses open addressing with linear probing so
+ * that the points are not boxed. May also be used as a Set of HexPoints, in
+ * which case the points are iterated row by row as in HexPoint.Comparator.
+ *
+ * @author tsnorri
+ * @see HexPoint#pack(int, int)
+ */
+public class HexPointSet extends AbstractSet<HexPoint>
+{
+	// Marks an empty slot; the key itself is stored separately.
+	private static final int FREE = Integer.MIN_VALUE;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int[] keys;
+	private int mask;
+	private int size;
+	private boolean hasFreeKey;
+
+
+	/**
+	 * Constructor.
+	 */
+	public HexPointSet()
+	{
+		this(INITIAL_CAPACITY);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param expectedSize The number of points to make room for.
+	 */
+	public HexPointSet(int expectedSize)
+	{
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < 2 * expectedSize)
+			capacity *= 2;
+		this.allocate(capacity);
+	}
+
+
+	private void allocate(int capacity)
+	{
+		this.keys = new int[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(this.keys, FREE);
+	}
+
+
+	/**
+	 * Slot of the given point or the free slot where it would be inserted.
+	 *
+	 * @param key The packed point, not FREE.
+	 * @return The slot.
+	 */
+	private int slot(int key)
+	{
+		int i = HexPoint.hashPacked(key) & this.mask;
+		while (FREE != this.keys[i] && key != this.keys[i])
+			i = (1 + i) & this.mask;
+		return i;
+	}
+
+
+	@Override
+	public int size()
+	{
+		return this.size;
+	}
+
+
+	/**
+	 * Check whether the given point is present.
+	 *
+	 * @param key The packed point.
+	 * @return Boolean.
+	 */
+	public boolean contains(int key)
+	{
+		if (FREE == key)
+			return this.hasFreeKey;
+		return FREE != this.keys[this.slot(key)];
+	}
+
+
+	/**
+	 * Add a point.
+	 *
+	 * @param key The packed point.
+	 * @return true if the point was not present.
+	 */
+	public boolean add(int key)
+	{
+		boolean retval = false;
+		if (FREE == key)
+		{
+			retval = !this.hasFreeKey;
+			this.hasFreeKey = true;
+		}
+		else
+		{
+			int i = this.slot(key);
+			if (FREE == this.keys[i])
+			{
+				this.keys[i] = key;
+				retval = true;
+			}
+		}
+
+		if (retval)
+		{
+			this.size++;
+			if (this.keys.length < 2 * this.size)
+				this.rehash(2 * this.keys.length);
+		}
+		return retval;
+	}
+
+
+	/**
+	 * Remove a point.
+	 *
+	 * @param key The packed point.
+	 * @return true if the point was present.
+	 */
+	public boolean remove(int key)
+	{
+		boolean retval = false;
+		if (FREE == key)
+		{
+			retval = this.hasFreeKey;
+			this.hasFreeKey = false;
+		}
+		else
+		{
+			int i = this.slot(key);
+			if (FREE != this.keys[i])
+			{
+				retval = true;
+
+				// Shift the following entries back so that no tombstones are needed.
+				int j = i;
+				while (true)
+				{
+					j = (1 + j) & this.mask;
+					if (FREE == this.keys[j])
+						break;
+
+					int home = HexPoint.hashPacked(this.keys[j]) & this.mask;
+					if (((j - home) & this.mask) >= ((j - i) & this.mask))
+					{
+						this.keys[i] = this.keys[j];
+						i = j;
+					}
+				}
+				this.keys[i] = FREE;
+			}
+		}
+
+		if (retval)
+			this.size--;
+		return retval;
+	}
+
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill(this.keys, FREE);
+		this.size = 0;
+		this.hasFreeKey = false;
+	}
+
+
+	private void rehash(int capacity)
+	{
+		int[] oldKeys = this.keys;
+		this.allocate(capacity);
+		for (int key : oldKeys)
+		{
+			if (FREE != key)
+				this.keys[this.slot(key)] = key;
+		}
+	}
+
+
+	/**
+	 * The points in the order of HexPoint.Comparator, i.e. row by row.
+	 *
+	 * @return The packed points.
+	 */
+	public int[] toSortedArray()
+	{
+		int[] retval = new int[this.size];
+		int count = 0;
+		if (this.hasFreeKey)
+		{
+			retval[count] = FREE;
+			count++;
+		}
+
+		for (int key : this.keys)
+		{
+			if (FREE != key)
+			{
+				retval[count] = key;
+				count++;
+			}
+		}
+
+		Arrays.sort(retval);
+		return retval;
+	}
+
+
+	@Override
+	public boolean contains(Object o)
+	{
+		boolean retval = false;
+		if (o instanceof HexPoint)
+			retval = this.contains(((HexPoint) o).pack());
+		return retval;
+	}
+
+
+	@Override
+	public boolean add(HexPoint point)
+	{
+		return this.add(point.pack());
+	}
+
+
+	@Override
+	public boolean remove(Object o)
+	{
+		boolean retval = false;
+		if (o instanceof HexPoint)
+			retval = this.remove(((HexPoint) o).pack());
+		return retval;
+	}
+
+
+	@Override
+	public Iterator<HexPoint> iterator()
+	{
+		final int[] sorted = this.toSortedArray();
+		return new Iterator<HexPoint>()
+		{
+			private int idx = 0;
+
+
+			@Override
+			public boolean hasNext()
+			{
+				return idx < sorted.length;
+			}
+
+
+			@Override
+			public HexPoint next()
+			{
+				if (!this.hasNext())
+					throw new NoSuchElementException();
+
+				HexPoint retval = HexPoint.unpack(sorted[idx]);
+				idx++;
+				return retval;
+			}
+
+
+			@Override
+			public void remove()
+			{
+				if (0 == idx)
+					throw new IllegalStateException();
+				HexPointSet.this.remove(sorted[idx - 1]);
+			}
+		};
+	}
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+/**
+ * An immutable transformation in hexagonal co-ordinate system.
+ *
+ * The transformation first mirrors the point if requested by swapping its X
+ * and Z co-ordinates, then rotates it clockwise by the given number of 60°
+ * steps around the origin and finally translates it. Since the result
+ * always satisfies x + y + z = 0, applying the transformation only needs the
+ * X and Y co-ordinates.
+ *
+ * @author tsnorri
+ */
+public final class HexTransform
+{
+	/**
+	 * The identity transformation.
+	 */
+	public static final HexTransform IDENTITY = new HexTransform(0, false, 0, 0, 0);
+
+	private final int rotation;
+	private final boolean mirrored;
+	private final int dx;
+	private final int dy;
+	private final int dz;
+
+	// The linear part as a 2×2-matrix on the X and Y co-ordinates.
+	private final int xx;
+	private final int yx;
+	private final int xy;
+	private final int yy;
+	private final int packedTranslation;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param rotation The number of clockwise steps, in [0, 5].
+	 * @param mirrored Whether X and Z are swapped before rotating.
+	 * @param dx Translation along the hexagonal X axis.
+	 * @param dy Translation along the hexagonal Y axis.
+	 * @param dz Translation along the hexagonal Z axis.
+	 */
+	private HexTransform(int rotation, boolean mirrored, int dx, int dy, int dz)
+	{
+		if (!(0 == dx + dy + dz))
+			throw new IllegalArgumentException("The sum of translations must be zero.");
+
+		this.rotation = rotation;
+		this.mirrored = mirrored;
+		this.dx = dx;
+		this.dy = dy;
+		this.dz = dz;
+
+		int[] ex = linear(rotation, mirrored, 1, 0, -1);
+		int[] ey = linear(rotation, mirrored, 0, 1, -1);
+		this.xx = ex[0];
+		this.xy = ex[1];
+		this.yx = ey[0];
+		this.yy = ey[1];
+		this.packedTranslation = HexPoint.packedTranslation(dx, dy);
+	}
+
+
+	/**
+	 * Create a transformation.
+	 *
+	 * @param rotation The number of clockwise 60° steps, may be negative.
+	 * @param mirrored Whether X and Z are swapped before rotating.
+	 * @param dx Translation along the hexagonal X axis.
+	 * @param dy Translation along the hexagonal Y axis.
+	 * @param dz Translation along the hexagonal Z axis.
+	 * @return The transformation.
+	 * @throws IllegalArgumentException
+	 */
+	public static HexTransform create(int rotation, boolean mirrored, int dx, int dy, int dz)
+	{
+		return new HexTransform(normalizedRotation(rotation), mirrored, dx, dy, dz);
+	}
+
+
+	/**
+	 * Create a rotation around the origin.
+	 *
+	 * @param steps The number of clockwise 60° steps, may be negative.
+	 * @return The transformation.
+	 */
+	public static HexTransform rotation(int steps)
+	{
+		return create(steps, false, 0, 0, 0);
+	}
+
+
+	/**
+	 * Create a translation.
+	 *
+	 * @param dx Translation along the hexagonal X axis.
+	 * @param dy Translation along the hexagonal Y axis.
+	 * @param dz Translation along the hexagonal Z axis.
+	 * @return The transformation.
+	 * @throws IllegalArgumentException
+	 */
+	public static HexTransform translation(int dx, int dy, int dz)
+	{
+		return new HexTransform(0, false, dx, dy, dz);
+	}
+
+
+	/**
+	 * Create a transformation from a 4×4-matrix. The matrix is applied to row
+	 * vectors (x, y, z, 1) and must consist of a rotation, possibly combined
+	 * with mirroring, and a translation.
+	 *
+	 * @param transformation The matrix.
+	 * @return The transformation.
+	 * @throws IllegalArgumentException
+	 */
+	public static HexTransform fromMatrix(int[][] transformation)
+	{
+		if (4 != transformation.length)
+			throw new IllegalArgumentException("Transformation matrix must be 4×4.");
+		for (int[] row : transformation)
+		{
+			if (4 != row.length)
+				throw new IllegalArgumentException("Transformation matrix must be 4×4.");
+		}
+
+		HexTransform retval = translation(transformation[3][0], transformation[3][1], transformation[3][2]);
+		if (!(0 == transformation[0][3] && 0 == transformation[1][3] && 0 == transformation[2][3] && 1 == transformation[3][3]))
+			throw new IllegalArgumentException("Transformation matrix must be affine.");
+
+		for (int i = 0; i < 12; i++)
+		{
+			HexTransform candidate = new HexTransform(i % 6, 6 <= i, retval.dx, retval.dy, retval.dz);
+			int[][] matrix = candidate.toMatrix();
+			boolean matches = true;
+			for (int j = 0; j < 3; j++)
+			{
+				for (int k = 0; k < 3; k++)
+					matches &= (matrix[j][k] == transformation[j][k]);
+			}
+
+			if (matches)
+				return candidate;
+		}
+		throw new IllegalArgumentException("Transformation matrix must be a rotation combined with a translation.");
+	}
+
+
+	/**
+	 * Rotation steps in [0, 5].
+	 *
+	 * @param rotation The number of steps.
+	 * @return The normalized number.
+	 */
+	private static int normalizedRotation(int rotation)
+	{
+		int retval = rotation % 6;
+		if (retval < 0)
+			retval += 6;
+		return retval;
+	}
+
+
+	/**
+	 * Apply the linear part of a transformation.
+	 *
+	 * @param rotation The number of clockwise steps.
+	 * @param mirrored Whether X and Z are swapped first.
+	 * @param x Hexagonal X co-ordinate.
+	 * @param y Hexagonal Y co-ordinate.
+	 * @param z Hexagonal Z co-ordinate.
+	 * @return The transformed co-ordinates.
+	 */
+	private static int[] linear(int rotation, boolean mirrored, int x, int y, int z)
+	{
+		if (mirrored)
+		{
+			int tmp = x;
+			x = z;
+			z = tmp;
+		}
+
+		for (int i = 0; i < rotation; i++)
+		{
+			int tmp = x;
+			x = -z;
+			z = -y;
+			y = -tmp;
+		}
+
+		int[] retval = {x, y, z};
+		return retval;
+	}
+
+
+	/**
+	 * The number of clockwise 60° steps.
+	 *
+	 * @return A number in [0, 5].
+	 */
+	public int getRotation()
+	{
+		return this.rotation;
+	}
+
+
+	/**
+	 * Whether the points are mirrored before rotating.
+	 *
+	 * @return Boolean.
+	 */
+	public boolean isMirrored()
+	{
+		return this.mirrored;
+	}
+
+
+	/**
+	 * Translation along the hexagonal X axis.
+	 *
+	 * @return The distance.
+	 */
+	public int getDX()
+	{
+		return this.dx;
+	}
+
+
+	/**
+	 * Translation along the hexagonal Y axis.
+	 *
+	 * @return The distance.
+	 */
+	public int getDY()
+	{
+		return this.dy;
+	}
+
+
+	/**
+	 * Translation along the hexagonal Z axis.
+	 *
+	 * @return The distance.
+	 */
+	public int getDZ()
+	{
+		return this.dz;
+	}
+
+
+	/**
+	 * Whether the transformation is a pure translation.
+	 *
+	 * @return Boolean.
+	 */
+	public boolean isTranslation()
+	{
+		return (0 == this.rotation && !this.mirrored);
+	}
+
+
+	/**
+	 * The transformed X co-ordinate.
+	 *
+	 * @param x Hexagonal X co-ordinate.
+	 * @param y Hexagonal Y co-ordinate.
+	 * @return The co-ordinate.
+	 */
+	public int applyX(int x, int y)
+	{
+		return this.xx * x + this.yx * y + this.dx;
+	}
+
+
+	/**
+	 * The transformed Y co-ordinate.
+	 *
+	 * @param x Hexagonal X co-ordinate.
+	 * @param y Hexagonal Y co-ordinate.
+	 * @return The co-ordinate.
+	 */
+	public int applyY(int x, int y)
+	{
+		return this.xy * x + this.yy * y + this.dy;
+	}
+
+
+	/**
+	 * Transform a packed point.
+	 *
+	 * @param packed The packed point.
+	 * @return The transformed packed point.
+	 */
+	public int applyPacked(int packed)
+	{
+		if (this.isTranslation())
+			return packed + this.packedTranslation;
+
+		int x = HexPoint.packedX(packed);
+		int y = HexPoint.packedY(packed);
+		return HexPoint.pack(this.applyX(x, y), this.applyY(x, y));
+	}
+
+
+	/**
+	 * Compose two transformations.
+	 *
+	 * @param next The transformation to be applied after this one.
+	 * @return A transformation equivalent to applying this and then next.
+	 */
+	public HexTransform andThen(HexTransform next)
+	{
+		// Mirroring reverses the direction of the rotations done before it.
+		int r = (next.mirrored ? next.rotation - this.rotation : next.rotation + this.rotation);
+		int tx = next.applyX(this.dx, this.dy);
+		int ty = next.applyY(this.dx, this.dy);
+		return new HexTransform(normalizedRotation(r), this.mirrored ^ next.mirrored, tx, ty, -(tx + ty));
+	}
+
+
+	/**
+	 * The transformation as a 4×4-matrix to be applied to row vectors
+	 * (x, y, z, 1).
+	 *
+	 * @return The matrix.
+	 */
+	public int[][] toMatrix()
+	{
+		int[] ex = linear(this.rotation, this.mirrored, 1, 0, 0);
+		int[] ey = linear(this.rotation, this.mirrored, 0, 1, 0);
+		int[] ez = linear(this.rotation, this.mirrored, 0, 0, 1);
+		int[][] retval =
+		{
+			{ex[0], ex[1], ex[2], 0},
+			{ey[0], ey[1], ey[2], 0},
+			{ez[0], ez[1], ez[2], 0},
+			{this.dx, this.dy, this.dz, 1}
+		};
+		return retval;
+	}
+
+
+	@Override
+	public boolean equals(Object o)
+	{
+		boolean retval = false;
+		if (o instanceof HexTransform)
+		{
+			HexTransform other = (HexTransform) o;
+			retval = (this.rotation == other.rotation
+				&& this.mirrored == other.mirrored
+				&& this.dx == other.dx
+				&& this.dy == other.dy);
+		}
+		return retval;
+	}
+
+
+	@Override
+	public int hashCode()
+	{
+		int hash = 7;
+		hash = 31 * hash + this.rotation;
+		hash = 31 * hash + (this.mirrored ? 1 : 0);
+		hash = 31 * hash + this.dx;
+		hash = 31 * hash + this.dy;
+		return hash;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("HexTransform rotation: %d mirrored: %b translation: (%d, %d, %d)",
+			this.rotation, this.mirrored, this.dx, this.dy, this.dz);
+	}
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.util.Arrays;
+
+
+/**
+ * Finds the location where a tetromino stops moving down on a trajectory.
+ *
+ * Above the highest occupied row only the edges of the game board affect
+ * the trajectory, so the next location depends only on the horizontal
+ * co-ordinate and the parity of the vertical co-ordinate. The solver
+ * precomputes the location after 2^i steps for every such state and crosses
+ * the empty rows with at most one jump per bit of their number. Below the
+ * highest occupied row the tetromino is moved one step at a time. The
+ * result is the same as when calling Trajectory.nextW until no space is
+ * available.
+ *
+ * The tables are calculated on demand for each combination of trajectory,
+ * tetromino type and orientation. The placement checks made below the
+ * highest occupied row are remembered for the duration of a call, so the
+ * walks of landingLocations share the locations that they have in common,
+ * such as the starting location and the fallbacks of the diagonal
+ * trajectories to the vertical one. An instance must not be used by
+ * several threads at the same time.
+ *
+ * @author tsnorri
+ */
+public class LandingSolver
+{
+	private static final int STUCK = -1;
+	private static final Trajectory.Type[] TRAJECTORY_TYPES = Trajectory.Type.values();
+
+	private final int width;
+	private final int padding;
+	private final int span;
+	private final GameBoard emptyGameBoard;
+	private final Trajectory trajectory = new Trajectory();
+	// Indexed by trajectory type, tetromino type, orientation, number of
+	// steps as a power of two and state.
+	private final int[][][][][] jumps;
+	// Open addressing table of the placement checks made during the current
+	// call, keyed by the packed location. Valid if the stamp equals the
+	// current generation.
+	private int[] probeKeys;
+	private int[] probeStamps;
+	private boolean[] probeResults;
+	private int probeCount;
+	private int probeGeneration;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param width The width of the game boards.
+	 */
+	public LandingSolver(int width)
+	{
+		this.width = width;
+
+		int padding = 0;
+		for (Tetromino.Type type : Tetromino.Type.values())
+		{
+			for (int i = 0; i < TetrominoShape.ORIENTATIONS; i++)
+			{
+				for (int parity = 0; parity < 2; parity++)
+				{
+					TetrominoShape shape = TetrominoShape.valueOf(type, i, parity);
+					padding = Math.max(padding, Math.max(-shape.getMinHorizontalOffset(), shape.getMaxHorizontalOffset()));
+				}
+			}
+		}
+		this.padding = padding;
+		this.span = width + 2 * padding;
+
+		// Tall enough for any shape on the rows of both parities above the lowest row.
+		this.emptyGameBoard = new ConcreteGameBoard(width, 16);
+		this.jumps = new int[Trajectory.Type.values().length][Tetromino.Type.values().length][TetrominoShape.ORIENTATIONS][][];
+		this.probeKeys = new int[64];
+		this.probeStamps = new int[64];
+		this.probeResults = new boolean[64];
+	}
+
+
+	/**
+	 * The width of the game boards.
+	 *
+	 * @return The width.
+	 */
+	public int getWidth()
+	{
+		return this.width;
+	}
+
+
+	private int encode(int w, int parity)
+	{
+		return parity * this.span + w + this.padding;
+	}
+
+
+	/**
+	 * The jump tables with at least the given number of levels.
+	 *
+	 * @param trajectoryType The trajectory.
+	 * @param type The type of the tetromino.
+	 * @param orientation The orientation of the tetromino, in [0, 5].
+	 * @param levels The number of levels.
+	 * @return The tables.
+	 */
+	private int[][] jumpTables(Trajectory.Type trajectoryType, Tetromino.Type type, int orientation, int levels)
+	{
+		int[][] retval = this.jumps[trajectoryType.ordinal()][type.ordinal()][orientation];
+		if (null == retval)
+		{
+			// The location after one step.
+			int[] first = new int[2 * this.span];
+			this.trajectory.setPreferredType(trajectoryType);
+			for (int parity = 0; parity < 2; parity++)
+			{
+				int h = 2 + parity;
+				for (int w = -this.padding; w < this.width + this.padding; w++)
+				{
+					int next = STUCK;
+					if (this.emptyGameBoard.canPlace(type, orientation, w, h))
+					{
+						int nextW = this.trajectory.nextW(type, orientation, w, h, this.emptyGameBoard);
+						if (Trajectory.NO_SPACE != nextW)
+							next = encode(nextW, 1 - parity);
+					}
+					first[encode(w, parity)] = next;
+				}
+			}
+			retval = new int[][] {first};
+		}
+
+		if (retval.length < levels)
+		{
+			int[][] extended = new int[levels][];
+			System.arraycopy(retval, 0, extended, 0, retval.length);
+			for (int i = retval.length; i < levels; i++)
+			{
+				int[] previous = extended[i - 1];
+				int[] current = new int[previous.length];
+				for (int j = 0; j < current.length; j++)
+					current[j] = (STUCK == previous[j] ? STUCK : previous[previous[j]]);
+				extended[i] = current;
+			}
+			retval = extended;
+		}
+
+		this.jumps[trajectoryType.ordinal()][type.ordinal()][orientation] = retval;
+		return retval;
+	}
+
+
+	private int normalizedOrientation(int orientation)
+	{
+		int retval = orientation % TetrominoShape.ORIENTATIONS;
+		if (retval < 0)
+			retval += TetrominoShape.ORIENTATIONS;
+		return retval;
+	}
+
+
+	/**
+	 * Forget the placement checks of the previous call.
+	 */
+	private void clearProbes()
+	{
+		this.probeCount = 0;
+		this.probeGeneration++;
+		if (0 == this.probeGeneration)
+		{
+			Arrays.fill(this.probeStamps, 0);
+			this.probeGeneration = 1;
+		}
+	}
+
+
+	private int probeSlot(int key)
+	{
+		int mask = this.probeKeys.length - 1;
+		int hash = key * 0x9e3779b9;
+		int retval = (hash ^ (hash >>> 16)) & mask;
+		while (this.probeGeneration == this.probeStamps[retval] && key != this.probeKeys[retval])
+			retval = (1 + retval) & mask;
+		return retval;
+	}
+
+
+	private void storeProbe(int key, boolean result)
+	{
+		int i = this.probeSlot(key);
+		this.probeKeys[i] = key;
+		this.probeStamps[i] = this.probeGeneration;
+		this.probeResults[i] = result;
+		this.probeCount++;
+	}
+
+
+	/**
+	 * Check whether a tetromino fits at the given location, remembering the
+	 * result until the next call of clearProbes.
+	 *
+	 * @param gameBoard The game board.
+	 * @param type The type of the tetromino.
+	 * @param o The orientation of the tetromino.
+	 * @param w The horizontal co-ordinate of the tetromino.
+	 * @param h The vertical co-ordinate of the tetromino.
+	 * @return Boolean.
+	 */
+	private boolean canPlace(GameBoard gameBoard, Tetromino.Type type, int o, int w, int h)
+	{
+		int key = HexPoint.packOffsets(w, h);
+		int i = this.probeSlot(key);
+		if (this.probeGeneration == this.probeStamps[i])
+			return this.probeResults[i];
+
+		boolean retval = gameBoard.canPlace(type, o, w, h);
+		if (this.probeKeys.length <= 2 * (1 + this.probeCount))
+		{
+			// Keep the table at most half full.
+			int[] keys = this.probeKeys;
+			int[] stamps = this.probeStamps;
+			boolean[] results = this.probeResults;
+			this.probeKeys = new int[2 * keys.length];
+			this.probeStamps = new int[2 * keys.length];
+			this.probeResults = new boolean[2 * keys.length];
+			this.probeCount = 0;
+			for (int j = 0; j < keys.length; j++)
+			{
+				if (this.probeGeneration == stamps[j])
+					this.storeProbe(keys[j], results[j]);
+			}
+		}
+		this.storeProbe(key, retval);
+		return retval;
+	}
+
+
+	/**
+	 * Next location of a tetromino on a trajectory. Equivalent to
+	 * Trajectory.nextW but uses the remembered placement checks.
+	 *
+	 * @param gameBoard The game board.
+	 * @param trajectoryType The trajectory.
+	 * @param type The type of the tetromino.
+	 * @param o The orientation of the tetromino.
+	 * @param w The current horizontal co-ordinate.
+	 * @param h The current vertical co-ordinate.
+	 * @return The next horizontal co-ordinate or Trajectory.NO_SPACE.
+	 */
+	private int nextW(GameBoard gameBoard, Trajectory.Type trajectoryType, Tetromino.Type type, int o, int w, int h)
+	{
+		int candidate;
+		for (int i = 0; Trajectory.NO_SPACE != (candidate = this.trajectory.candidateW(trajectoryType, type, o, w, h, i)); i++)
+		{
+			if (this.canPlace(gameBoard, type, o, candidate, h - 1))
+				return candidate;
+		}
+		return Trajectory.NO_SPACE;
+	}
+
+
+	/**
+	 * The location where a tetromino stops moving down.
+	 *
+	 * @param gameBoard The game board.
+	 * @param maxColumnHeight The height of the highest column.
+	 * @param trajectoryType The trajectory.
+	 * @param type The type of the tetromino.
+	 * @param o The orientation of the tetromino, in [0, 5].
+	 * @param w The horizontal co-ordinate of the tetromino.
+	 * @param h The vertical co-ordinate of the tetromino.
+	 * @return The final co-ordinates, packed.
+	 */
+	private int landingLocation(GameBoard gameBoard, int maxColumnHeight, Trajectory.Type trajectoryType, Tetromino.Type type, int o, int w, int h)
+	{
+		// Moving to row v only checks rows v and above, so the steps down to
+		// the highest occupied row do not depend on the occupied points.
+		int freeSteps = h - maxColumnHeight;
+		if (0 < freeSteps)
+		{
+			int levels = 32 - Integer.numberOfLeadingZeros(freeSteps);
+			int[][] tables = jumpTables(trajectoryType, type, o, levels);
+			int state = encode(w, h & 1);
+			for (int i = levels - 1; 0 <= i; i--)
+			{
+				int steps = 1 << i;
+				if (steps <= freeSteps)
+				{
+					int next = tables[i][state];
+					if (STUCK != next)
+					{
+						state = next;
+						h -= steps;
+						freeSteps -= steps;
+					}
+				}
+			}
+			w = state % this.span - this.padding;
+		}
+
+		int nextW;
+		while (Trajectory.NO_SPACE != (nextW = this.nextW(gameBoard, trajectoryType, type, o, w, h)))
+		{
+			w = nextW;
+			h--;
+		}
+		return HexPoint.packOffsets(w, h);
+	}
+
+
+	/**
+	 * The location where a tetromino stops moving down.
+	 *
+	 * @param gameBoard The game board, as wide as the solver.
+	 * @param trajectoryType The trajectory.
+	 * @param type The type of the tetromino.
+	 * @param orientation The orientation of the tetromino.
+	 * @param w The horizontal co-ordinate of the tetromino.
+	 * @param h The vertical co-ordinate of the tetromino. The tetromino must
+	 * fit on the game board.
+	 * @return The final co-ordinates w and h, packed as horizontal and
+	 * vertical offsets.
+	 * @see HexPoint#packOffsets(int, int)
+	 */
+	public int landingLocation(GameBoard gameBoard, Trajectory.Type trajectoryType, Tetromino.Type type, int orientation, int w, int h)
+	{
+		if (gameBoard.getWidth() != this.width)
+			throw new IllegalArgumentException("Game board width does not match.");
+
+		this.clearProbes();
+		return landingLocation(gameBoard, gameBoard.getMaxColumnHeight(), trajectoryType, type, normalizedOrientation(orientation), w, h);
+	}
+
+
+	/**
+	 * The locations where a tetromino stops moving down on each of the
+	 * trajectories. The height of the occupied part of the game board is
+	 * determined once for all of them, and a location is checked at most once
+	 * even if several trajectories pass through it.
+	 *
+	 * @param gameBoard The game board, as wide as the solver.
+	 * @param type The type of the tetromino.
+	 * @param orientation The orientation of the tetromino.
+	 * @param w The horizontal co-ordinate of the tetromino.
+	 * @param h The vertical co-ordinate of the tetromino. The tetromino must
+	 * fit on the game board.
+	 * @param locations The buffer for the packed final co-ordinates, indexed
+	 * by the ordinal of the trajectory type.
+	 * @see #landingLocation(GameBoard, Trajectory.Type, Tetromino.Type, int, int, int)
+	 */
+	public void landingLocations(GameBoard gameBoard, Tetromino.Type type, int orientation, int w, int h, int[] locations)
+	{
+		if (gameBoard.getWidth() != this.width)
+			throw new IllegalArgumentException("Game board width does not match.");
+
+		int maxColumnHeight = gameBoard.getMaxColumnHeight();
+		int o = normalizedOrientation(orientation);
+		this.clearProbes();
+		for (Trajectory.Type trajectoryType : TRAJECTORY_TYPES)
+			locations[trajectoryType.ordinal()] = landingLocation(gameBoard, maxColumnHeight, trajectoryType, type, o, w, h);
+	}
+}
@@ -63,6 +63,17 @@ public class MutableHexPoint extends HexPoint
 	}
 
 
+	/**
+	 * Apply a transformation.
+	 *
+	 * @param transformation The transformation.
+	 */
+	public void transform(HexTransform transformation)
+	{
+		super._transform(transformation);
+	}
+
+
 	/**
 	 * Clone the current point, return an immutable type.
 	 *
@@ -71,14 +82,7 @@ public class MutableHexPoint extends HexPoint
 	@Override
 	public HexPoint clone()
 	{
-		try
-		{
-			return super._clone();
-		}
-		catch (CloneNotSupportedException exc)
-		{
-			throw new RuntimeException(exc);
-		}
+		return HexPoint.valueOf(this.x, this.y, this.z);
 	}
 
 
@@ -92,6 +96,7 @@ public class MutableHexPoint extends HexPoint
 		this.x = point.x;
 		this.y = point.y;
 		this.z = point.z;
+		this.hash = point.hash;
 	}
 
 
@@ -106,5 +111,6 @@ public class MutableHexPoint extends HexPoint
 		this.x = h - v / 2;
 		this.y = v;
 		this.z = -(x + y);
+		this.hash = hashPacked(pack(this.x, this.y));
 	}
 }
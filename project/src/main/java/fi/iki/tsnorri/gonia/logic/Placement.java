@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.util.Arrays;
+
+
+/**
+ * A location where a tetromino comes to rest.
+ *
+ * @author tsnorri
+ * @see PlacementEnumerator
+ */
+public final class Placement
+{
+	private final Tetromino.Type type;
+	private final int orientation;
+	private final int w;
+	private final int h;
+	private final int[] occupiedPoints;
+	private final int linesCleared;
+	private final int dropDistance;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param type The type of the tetromino.
+	 * @param orientation The orientation of the tetromino.
+	 * @param w The horizontal co-ordinate of the tetromino.
+	 * @param h The vertical co-ordinate of the tetromino.
+	 * @param occupiedPoints The points of the tetromino, packed.
+	 * @param linesCleared The number of lines the tetromino completes.
+	 * @param dropDistance The number of rows the tetromino dropped.
+	 */
+	Placement(Tetromino.Type type, int orientation, int w, int h, int[] occupiedPoints, int linesCleared, int dropDistance)
+	{
+		this.type = type;
+		this.orientation = orientation;
+		this.w = w;
+		this.h = h;
+		this.occupiedPoints = occupiedPoints;
+		this.linesCleared = linesCleared;
+		this.dropDistance = dropDistance;
+	}
+
+
+	/**
+	 * The type of the tetromino.
+	 *
+	 * @return The type.
+	 */
+	public Tetromino.Type getType()
+	{
+		return this.type;
+	}
+
+
+	/**
+	 * The orientation of the tetromino.
+	 *
+	 * @return A number in [0, 5].
+	 * @see Tetromino#getOrientation()
+	 */
+	public int getOrientation()
+	{
+		return this.orientation;
+	}
+
+
+	/**
+	 * The horizontal co-ordinate of the tetromino.
+	 *
+	 * @return The co-ordinate.
+	 * @see Tetromino#getW()
+	 */
+	public int getW()
+	{
+		return this.w;
+	}
+
+
+	/**
+	 * The vertical co-ordinate of the tetromino.
+	 *
+	 * @return The co-ordinate.
+	 * @see Tetromino#getH()
+	 */
+	public int getH()
+	{
+		return this.h;
+	}
+
+
+	/**
+	 * The points occupied by the tetromino before removing the lines.
+	 *
+	 * @return The packed points in ascending order.
+	 * @see HexPoint#unpack(int)
+	 */
+	public int[] getOccupiedPoints()
+	{
+		return this.occupiedPoints.clone();
+	}
+
+
+	/**
+	 * The number of lines that are removed when the tetromino lands.
+	 *
+	 * @return The number.
+	 */
+	public int getLinesCleared()
+	{
+		return this.linesCleared;
+	}
+
+
+	/**
+	 * The number of rows the tetromino moved down from its initial location.
+	 *
+	 * @return The distance.
+	 */
+	public int getDropDistance()
+	{
+		return this.dropDistance;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("Placement %s orientation: %d w: %d h: %d lines: %d drop distance: %d",
+			this.type.name(), this.orientation, this.w, this.h, this.linesCleared, this.dropDistance);
+	}
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Finds the locations where a tetromino may come to rest.
+ *
+ * The states of the tetromino, i.e. its orientation and location, are
+ * explored breadth-first starting from the initial state. The moves are the
+ * ones available in GameController: moving left and right, rotating and
+ * moving down on the trajectory. A state from which the tetromino cannot
+ * move down is a resting location. Dropping is equivalent to moving down
+ * repeatedly and does not reach other states.
+ *
+ * The states are represented as integers and the visited ones are stored in
+ * a bitset, so exploring them does not allocate memory. The state from
+ * which each state was first reached is recorded, so the moves to any of
+ * the placements may be retrieved afterwards. The tetromino never moves
+ * up, so the buffers cover the rows up to the initial one. Searches with
+ * more than MAX_STATES states are not done. The buffers are reused between
+ * calls, so an instance must not be used by several threads at the same
+ * time.
+ *
+ * @author tsnorri
+ */
+public class PlacementEnumerator
+{
+	/**
+	 * The moves of a tetromino, as in GameController.
+	 */
+	public enum Move
+	{
+		Left,
+		Right,
+		RotateCW,
+		RotateCCW,
+		Down
+	}
+
+	/**
+	 * The greatest number of states in a search, about 33 MiB of buffers in
+	 * total.
+	 */
+	public static final long MAX_STATES = 1L << 22;
+
+	private Trajectory trajectory = new Trajectory();
+	private long[] visited = new long[0];
+	private long[] placed = new long[0];
+	private int[] queue = new int[0];
+	private int[] parents = new int[0];
+	private int initial;
+
+	// Dimensions of the current search.
+	private int padding;
+	private int span;
+	private int height;
+
+
+	/**
+	 * Constructor.
+	 */
+	public PlacementEnumerator()
+	{
+	}
+
+
+	/**
+	 * The greatest distance of a point from the tetromino's horizontal
+	 * co-ordinate.
+	 *
+	 * @param type The type of the tetromino.
+	 * @return The distance.
+	 */
+	private static int maxHorizontalDistance(Tetromino.Type type)
+	{
+		int retval = 0;
+		for (int i = 0; i < TetrominoShape.ORIENTATIONS; i++)
+		{
+			for (int parity = 0; parity < 2; parity++)
+			{
+				TetrominoShape shape = TetrominoShape.valueOf(type, i, parity);
+				retval = Math.max(retval, Math.max(-shape.getMinHorizontalOffset(), shape.getMaxHorizontalOffset()));
+			}
+		}
+		return retval;
+	}
+
+
+	/**
+	 * The number of states in a search.
+	 *
+	 * @param width The width of the game board.
+	 * @param type The type of the tetromino.
+	 * @param h The initial vertical co-ordinate of the tetromino.
+	 * @return The number.
+	 */
+	private static long stateCount(int width, Tetromino.Type type, int h)
+	{
+		return (long) TetrominoShape.ORIENTATIONS * (1L + h) * (width + 2L * maxHorizontalDistance(type));
+	}
+
+
+	/**
+	 * Check whether placements may be enumerated for a tetromino that starts
+	 * on the given row.
+	 *
+	 * @param width The width of the game board.
+	 * @param type The type of the tetromino.
+	 * @param h The initial vertical co-ordinate of the tetromino.
+	 * @return Boolean.
+	 */
+	public static boolean isSupported(int width, Tetromino.Type type, int h)
+	{
+		return (0 < width && 0 <= h && stateCount(width, type, h) <= MAX_STATES);
+	}
+
+
+	private int encode(int orientation, int w, int h)
+	{
+		return (orientation * this.height + h) * this.span + w + this.padding;
+	}
+
+
+	private static boolean testAndSet(long[] bits, int i)
+	{
+		long mask = 1L << i;
+		boolean retval = (0 != (bits[i >>> 6] & mask));
+		bits[i >>> 6] |= mask;
+		return retval;
+	}
+
+
+	/**
+	 * Find every location where a tetromino may come to rest.
+	 *
+	 * Placements that cover the same points are reported once, even if they
+	 * are reached in different orientations.
+	 *
+	 * @param gameBoard The game board.
+	 * @param type The type of the tetromino.
+	 * @param trajectoryType The trajectory of the tetromino.
+	 * @param w The initial horizontal co-ordinate of the tetromino.
+	 * @param h The initial vertical co-ordinate of the tetromino.
+	 * @return The placements in the order they were found, empty if the
+	 * tetromino cannot be placed in the initial location.
+	 * @throws IllegalArgumentException if the search would be too large.
+	 * @see GameController#step()
+	 * @see #isSupported(int, Tetromino.Type, int)
+	 */
+	public List<Placement> enumerate(GameBoard gameBoard, Tetromino.Type type, Trajectory.Type trajectoryType, int w, int h)
+	{
+		List<Placement> retval = new ArrayList<Placement>();
+		if (!gameBoard.canPlace(type, 0, w, h))
+			return retval;
+
+		if (!isSupported(gameBoard.getWidth(), type, h))
+			throw new IllegalArgumentException(String.format("Too many states for a tetromino at row %d on a game board of width %d.", h, gameBoard.getWidth()));
+
+		// A tetromino may be partly outside the game board on the left and the
+		// right only by the distance of its points from w. It does not move up.
+		this.padding = maxHorizontalDistance(type);
+		this.span = gameBoard.getWidth() + 2 * this.padding;
+		this.height = 1 + h;
+		int capacity = (int) stateCount(gameBoard.getWidth(), type, h);
+		int words = (capacity + 63) >>> 6;
+		if (this.visited.length < words)
+		{
+			this.visited = new long[words];
+			this.placed = new long[words];
+			this.queue = new int[capacity];
+			this.parents = new int[capacity];
+		}
+		else
+		{
+			Arrays.fill(this.visited, 0, words, 0L);
+			Arrays.fill(this.placed, 0, words, 0L);
+		}
+		this.trajectory.setPreferredType(trajectoryType);
+
+		int head = 0;
+		int tail = 0;
+		this.initial = encode(0, w, h);
+		testAndSet(this.visited, this.initial);
+		this.queue[tail] = this.initial;
+		tail++;
+
+		while (head < tail)
+		{
+			int state = this.queue[head];
+			head++;
+			int sw = state % this.span - this.padding;
+			int sh = (state / this.span) % this.height;
+			int so = state / (this.span * this.height);
+
+			// Horizontal moves and rotations.
+			for (int i = 0; i < 4; i++)
+			{
+				int nw = sw;
+				int no = so;
+				switch (i)
+				{
+					case 0:
+						nw--;
+						break;
+					case 1:
+						nw++;
+						break;
+					case 2:
+						no = (1 + so) % TetrominoShape.ORIENTATIONS;
+						break;
+					case 3:
+						no = (TetrominoShape.ORIENTATIONS - 1 + so) % TetrominoShape.ORIENTATIONS;
+						break;
+				}
+
+				if (gameBoard.canPlace(type, no, nw, sh))
+				{
+					int next = encode(no, nw, sh);
+					if (!testAndSet(this.visited, next))
+					{
+						this.parents[next] = state;
+						this.queue[tail] = next;
+						tail++;
+					}
+				}
+			}
+
+			// Moving down.
+			int nw = this.trajectory.nextW(type, so, sw, sh, gameBoard);
+			if (Trajectory.NO_SPACE == nw)
+				this.addPlacement(retval, gameBoard, type, so, sw, sh, h - sh);
+			else
+			{
+				int next = encode(so, nw, sh - 1);
+				if (!testAndSet(this.visited, next))
+				{
+					this.parents[next] = state;
+					this.queue[tail] = next;
+					tail++;
+				}
+			}
+		}
+		return retval;
+	}
+
+
+	/**
+	 * The moves that take the tetromino from the initial state of the
+	 * previous call of enumerate to a placement. Moving down is done on the
+	 * trajectory given to enumerate. Once the moves have been made, the
+	 * tetromino cannot move down.
+	 *
+	 * @param placement A placement returned by the previous call of
+	 * enumerate.
+	 * @return The moves in order.
+	 */
+	public List<Move> moves(Placement placement)
+	{
+		List<Move> retval = new ArrayList<Move>();
+		int state = encode(placement.getOrientation(), placement.getW(), placement.getH());
+		while (this.initial != state)
+		{
+			int parent = this.parents[state];
+			int h = (state / this.span) % this.height;
+			int o = state / (this.span * this.height);
+			int ph = (parent / this.span) % this.height;
+			int po = parent / (this.span * this.height);
+			int dw = (state % this.span) - (parent % this.span);
+
+			if (h != ph)
+				retval.add(Move.Down);
+			else if (o == (1 + po) % TetrominoShape.ORIENTATIONS)
+				retval.add(Move.RotateCW);
+			else if (o != po)
+				retval.add(Move.RotateCCW);
+			else if (dw < 0)
+				retval.add(Move.Left);
+			else
+				retval.add(Move.Right);
+			state = parent;
+		}
+		Collections.reverse(retval);
+		return retval;
+	}
+
+
+	/**
+	 * Add a placement unless one with the same points has been added.
+	 *
+	 * @param placements The placements.
+	 * @param gameBoard The game board.
+	 * @param type The type of the tetromino.
+	 * @param orientation The orientation of the tetromino.
+	 * @param w The horizontal co-ordinate of the tetromino.
+	 * @param h The vertical co-ordinate of the tetromino.
+	 * @param dropDistance The number of rows the tetromino moved down.
+	 */
+	private void addPlacement(List<Placement> placements, GameBoard gameBoard, Tetromino.Type type, int orientation, int w, int h, int dropDistance)
+	{
+		// Orientations that differ by the number of distinct orientations
+		// have the same points relative to their leftmost point.
+		int canonical = orientation % TetrominoShape.getOrientationCount(type);
+		TetrominoShape shape = TetrominoShape.valueOf(type, orientation, h);
+		TetrominoShape canonicalShape = TetrominoShape.valueOf(type, canonical, h);
+		int canonicalW = w + shape.getMinHorizontalOffset() - canonicalShape.getMinHorizontalOffset();
+		if (testAndSet(this.placed, encode(canonical, canonicalW, h)))
+			return;
+
+		int[] points = new int[shape.getPointCount()];
+		for (int i = 0; i < points.length; i++)
+			points[i] = HexPoint.packOffsets(w + shape.getHorizontalOffset(i), h + shape.getVerticalOffset(i));
+		Arrays.sort(points);
+
+		// Count the points on each row to find the completed lines.
+		int lines = 0;
+		int i = 0;
+		while (i < points.length)
+		{
+			int v = HexPoint.packedY(points[i]);
+			int count = 0;
+			while (i < points.length && v == HexPoint.packedY(points[i]))
+			{
+				count++;
+				i++;
+			}
+			if (gameBoard.getWidth() == gameBoard.getOccupiedCount(v) + count)
+				lines++;
+		}
+
+		placements.add(new Placement(type, orientation, w, h, points, lines, dropDistance));
+	}
+}
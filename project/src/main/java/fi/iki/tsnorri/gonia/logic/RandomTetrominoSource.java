@@ -9,16 +9,18 @@
  */
 package fi.iki.tsnorri.gonia.logic;
 
+import java.util.Random;
+
 
 /**
  * Returns randomly chosen tetrominos.
  *
  * @author tsnorri
  */
-public class RandomTetrominoSource implements TetrominoSource
+public class RandomTetrominoSource extends RecyclingTetrominoSource
 {
-	Tetromino currentTetromino;
 	Tetromino.Type[] allowedTypes;
+	private Random random;
 
 
 	/**
@@ -28,22 +30,28 @@ public class RandomTetrominoSource implements TetrominoSource
 	 */
 	public RandomTetrominoSource(Tetromino.Type[] allowedTypes)
 	{
-		this.allowedTypes = allowedTypes.clone();
+		this(allowedTypes, new Random());
 	}
 
 
-	@Override
-	public Tetromino getTetromino()
+	/**
+	 * Constructor.
+	 *
+	 * @param allowedTypes Types of the created tetrominos.
+	 * @param random The random number generator, e.g. one with a fixed seed
+	 * for a repeatable sequence.
+	 */
+	public RandomTetrominoSource(Tetromino.Type[] allowedTypes, Random random)
 	{
-		return currentTetromino;
+		this.allowedTypes = allowedTypes.clone();
+		this.random = random;
 	}
 
 
 	@Override
-	public void createTetromino()
+	protected Tetromino.Type nextType()
 	{
-		int idx = (int) Math.floor(allowedTypes.length * Math.random());
-		Tetromino.Type tetrominoType = this.allowedTypes[idx];
-		currentTetromino = Tetromino.tetrominoWithType(tetrominoType);
+		int idx = this.random.nextInt(this.allowedTypes.length);
+		return this.allowedTypes[idx];
 	}
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+/**
+ * The points visited by a single point on the trajectories of an empty game
+ * board.
+ *
+ * Every point of a tetromino is translated by the same amount on each step,
+ * so as long as the tetromino is not stopped and does not have to dodge,
+ * each of its points follows its own ray. On the diagonal trajectories the
+ * ray is a line along the hexagonal X or Z axis. On the vertical trajectory
+ * the direction alternates, starting with the one chosen by the lowest row
+ * of the tetromino, so there are two rays for every point. A ray ends at
+ * the edge of the game board.
+ *
+ * The rays are calculated when the table is created and take space in
+ * proportion to the number of points on the game board times its height.
+ * Tables that would store more than MAX_POINTS points are not created; the
+ * trajectories move the points one step at a time on such game boards.
+ *
+ * @author tsnorri
+ * @see Trajectory
+ */
+public final class RayTable
+{
+	/**
+	 * The greatest number of points stored in a table, 16 MiB in total.
+	 */
+	public static final long MAX_POINTS = 1L << 22;
+
+	private static final int[] EMPTY_RAY = new int[0];
+
+	private final int width;
+	private final int height;
+	// Indexed by the direction of the first step (left, right, vertical from
+	// an even row and vertical from an odd row) and the point.
+	private final int[][][] rays;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param width The width of the game boards.
+	 * @param height The height of the game boards.
+	 * @throws IllegalArgumentException if the table would be too large.
+	 * @see #isSupported(int, int)
+	 */
+	public RayTable(int width, int height)
+	{
+		if (!isSupported(width, height))
+			throw new IllegalArgumentException(String.format("A table for %dx%d game boards would be too large.", width, height));
+
+		this.width = width;
+		this.height = height;
+		this.rays = new int[4][width * height][];
+
+		// The vertical trajectory moves right from the even rows.
+		int left = HexPoint.packedOrthogonalTranslation(0, -1, false);
+		int right = HexPoint.packedOrthogonalTranslation(0, -1, true);
+		int[] buffer = new int[height];
+		for (int v = 0; v < height; v++)
+		{
+			for (int h = 0; h < width; h++)
+			{
+				int packed = HexPoint.packOffsets(h, v);
+				int i = v * width + h;
+				this.rays[0][i] = this.calculateRay(packed, left, left, buffer);
+				this.rays[1][i] = this.calculateRay(packed, right, right, buffer);
+				this.rays[2][i] = this.calculateRay(packed, right, left, buffer);
+				this.rays[3][i] = this.calculateRay(packed, left, right, buffer);
+			}
+		}
+	}
+
+
+	/**
+	 * Check whether a table may be created for game boards of the given
+	 * size. The rays move down one row per step, so a table stores fewer
+	 * than 2 · width · height² points.
+	 *
+	 * @param width The width of the game boards.
+	 * @param height The height of the game boards.
+	 * @return Boolean.
+	 */
+	public static boolean isSupported(int width, int height)
+	{
+		return (0 < width && 0 < height && 2L * width * height * height <= MAX_POINTS);
+	}
+
+
+	private boolean isValid(int packed)
+	{
+		int v = HexPoint.packedY(packed);
+		int h = HexPoint.packedHorizontalOffset(packed);
+		return (0 <= v && v < this.height && 0 <= h && h < this.width);
+	}
+
+
+	private int[] calculateRay(int packed, int first, int second, int[] buffer)
+	{
+		int length = 0;
+		int translation = first;
+		int current = packed + translation;
+		while (this.isValid(current))
+		{
+			buffer[length] = current;
+			length++;
+			translation = (first == translation ? second : first);
+			current += translation;
+		}
+
+		int[] retval = new int[length];
+		System.arraycopy(buffer, 0, retval, 0, length);
+		return retval;
+	}
+
+
+	/**
+	 * The width of the game boards.
+	 *
+	 * @return The width.
+	 */
+	public int getWidth()
+	{
+		return this.width;
+	}
+
+
+	/**
+	 * The height of the game boards.
+	 *
+	 * @return The height.
+	 */
+	public int getHeight()
+	{
+		return this.height;
+	}
+
+
+	/**
+	 * The points visited by a point on an empty game board. The returned
+	 * array is shared and must not be modified.
+	 *
+	 * @param trajectoryType The trajectory.
+	 * @param lowestRow The lowest row of the tetromino, which determines the
+	 * first direction of the vertical trajectory.
+	 * @param packed The packed point.
+	 * @return The packed points in the order they are visited, empty if the
+	 * point is not on the game board.
+	 */
+	int[] ray(Trajectory.Type trajectoryType, int lowestRow, int packed)
+	{
+		if (!this.isValid(packed))
+			return EMPTY_RAY;
+
+		int i = HexPoint.packedY(packed) * this.width + HexPoint.packedHorizontalOffset(packed);
+		switch (trajectoryType)
+		{
+			case DiagonalLeft:
+				return this.rays[0][i];
+
+			case DiagonalRight:
+				return this.rays[1][i];
+
+			case Vertical:
+				return this.rays[2 + (lowestRow & 1)][i];
+		}
+		return EMPTY_RAY;
+	}
+
+
+	/**
+	 * The number of steps a tetromino may take on a trajectory before it is
+	 * stopped or has to dodge. The rays of all the points are checked in one
+	 * pass.
+	 *
+	 * @param trajectoryType The trajectory.
+	 * @param points The packed points of the tetromino.
+	 * @param count The number of points.
+	 * @param gameBoard The game board, as large as the table.
+	 * @return The number of steps.
+	 */
+	public int freeSteps(Trajectory.Type trajectoryType, int[] points, int count, GameBoard gameBoard)
+	{
+		int lowestRow = Integer.MAX_VALUE;
+		for (int i = 0; i < count; i++)
+			lowestRow = Math.min(lowestRow, HexPoint.packedY(points[i]));
+
+		int retval = Integer.MAX_VALUE;
+		for (int i = 0; i < count && 0 < retval; i++)
+		{
+			int[] ray = this.ray(trajectoryType, lowestRow, points[i]);
+			int limit = Math.min(retval, ray.length);
+			int j = 0;
+			while (j < limit && !gameBoard.isOccupied(ray[j]))
+				j++;
+			retval = j;
+		}
+		return (Integer.MAX_VALUE == retval ? 0 : retval);
+	}
+}
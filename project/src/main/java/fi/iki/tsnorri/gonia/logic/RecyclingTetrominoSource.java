@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Tetromino factory that reuses the recycled tetrominoes. Once the pool has
+ * grown to the number of tetrominoes in use, creating tetrominoes allocates
+ * nothing.
+ *
+ * @author tsnorri
+ */
+public abstract class RecyclingTetrominoSource implements TetrominoSource
+{
+	Tetromino currentTetromino;
+	private List<Tetromino> pool = new ArrayList<Tetromino>();
+
+
+	/**
+	 * The type of the next tetromino.
+	 *
+	 * @return The type.
+	 */
+	protected abstract Tetromino.Type nextType();
+
+
+	@Override
+	public Tetromino getTetromino()
+	{
+		return currentTetromino;
+	}
+
+
+	@Override
+	public void createTetromino()
+	{
+		Tetromino.Type tetrominoType = this.nextType();
+		int count = this.pool.size();
+		if (0 == count)
+			currentTetromino = Tetromino.tetrominoWithType(tetrominoType);
+		else
+		{
+			currentTetromino = this.pool.remove(count - 1);
+			currentTetromino.reset(tetrominoType);
+		}
+	}
+
+
+	@Override
+	public void recycleTetromino(Tetromino tetromino)
+	{
+		if (null != tetromino && tetromino != currentTetromino)
+			this.pool.add(tetromino);
+	}
+}
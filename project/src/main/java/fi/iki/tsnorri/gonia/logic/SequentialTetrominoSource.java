@@ -15,9 +15,8 @@ package fi.iki.tsnorri.gonia.logic;
  *
  * @author tsnorri
  */
-public class SequentialTetrominoSource implements TetrominoSource
+public class SequentialTetrominoSource extends RecyclingTetrominoSource
 {
-	Tetromino currentTetromino;
 	Tetromino.Type[] sequence;
 	int idx;
 
@@ -34,18 +33,10 @@ public class SequentialTetrominoSource implements TetrominoSource
 
 
 	@Override
-	public Tetromino getTetromino()
+	protected Tetromino.Type nextType()
 	{
-		return currentTetromino;
-	}
-
-
-	@Override
-	public void createTetromino()
-	{
-		Tetromino.Type tetrominoType = this.sequence[this.idx];
+		Tetromino.Type retval = this.sequence[this.idx];
 		this.idx = (1 + this.idx) % this.sequence.length;
-
-		currentTetromino = Tetromino.tetrominoWithType(tetrominoType);
+		return retval;
 	}
 }
@@ -10,9 +10,9 @@
 package fi.iki.tsnorri.gonia.logic;
 
 import java.awt.Color;
-import java.util.Arrays;
+import java.util.AbstractList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.javatuples.Pair;
 
@@ -32,172 +32,234 @@ public class Tetromino
 		C, I, S, Z, L, J, O, T1, T2, Y
 	};
 
-	private static final float SATURATION = 1.0f;
-	private static final float BRIGHTNESS = 0.4f;
-
+	// Calculated from the state when needed.
 	MutableHexPoint[] points;
-	MutableHexPoint[] shapePoints;
+	boolean pointsValid = false;
+	List<HexPoint> pointsView = new AbstractList<HexPoint>()
+	{
+		@Override
+		public HexPoint get(int index)
+		{
+			return Tetromino.this.updatedPoints()[index];
+		}
+
+
+		@Override
+		public int size()
+		{
+			return Tetromino.this.points.length;
+		}
+	};
+	Type type;
+	// Index of the shape in TetrominoShape.
+	int orientation = 0;
 	// Location along orthogonal axes.
 	int w = 0;
 	int h = 0;
 	String name;
 	Color color;
+	byte tile;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param type The type of the tetromino.
+	 */
+	public Tetromino(Type type)
+	{
+		this.reset(type);
+	}
 
 
 	/**
 	 * Constructor.
 	 *
+	 * The points are matched to the tetromino types, so they must form one
+	 * of the shapes in some orientation. The tetromino is placed on the
+	 * given points; e.g. the points of the type's initial shape relative to
+	 * the origin give the same state as tetrominoWithType.
+	 *
 	 * @param name The name of the tetromino, e.g. ”T1”.
 	 * @param color The colour of the tetromino.
 	 * @param points The points occupied by the tetromino.
+	 * @throws IllegalArgumentException if the points do not form a tetromino.
 	 */
 	public Tetromino(String name, Color color, HexPoint... points)
 	{
 		if (0 == points.length)
 			throw new IllegalArgumentException("No points given.");
 
-		this.points = new MutableHexPoint[points.length];
-		this.shapePoints = new MutableHexPoint[points.length];
-		for (int i = 0; i < points.length; i++)
+		boolean found = false;
+		for (Type type : Type.values())
 		{
-			this.points[i] = points[i].mutableClone();
-			this.shapePoints[i] = points[i].mutableClone();
+			this.reset(type);
+			if (this.placeOn(points))
+			{
+				found = true;
+				break;
+			}
 		}
 
+		if (!found)
+			throw new IllegalArgumentException("The points do not form a tetromino.");
+
 		this.name = name;
 		this.color = color;
+		this.tile = TilePalette.indexForColor(color);
 	}
 
 
 	/**
-	 * Create a tetromino of the given type.
+	 * Turn the tetromino into a new one of the given type in the initial
+	 * orientation at the origin. Allocates nothing if the number of points
+	 * does not change, so that tetrominoes may be reused.
 	 *
 	 * @param type The type.
-	 * @return Tetromino.
 	 */
-	public static Tetromino tetrominoWithType(Type type)
+	public void reset(Type type)
 	{
-		Tetromino retval = null;
-		switch (type)
+		this.type = type;
+		this.name = type.name();
+		this.color = TilePalette.colorForType(type);
+		this.tile = TilePalette.indexForType(type);
+		this.orientation = 0;
+		this.w = 0;
+		this.h = 0;
+		this.pointsValid = false;
+
+		TetrominoShape shape = TetrominoShape.valueOf(type, 0, 0);
+		if (null == this.points || this.points.length != shape.getPointCount())
 		{
-			case C:
-				retval = new Tetromino(
-					"C",
-					tetrominoColor(184.0f),
-					new HexPoint(1, -1, 0),
-					new HexPoint(0, -1, 1),
-					new HexPoint(-1, 0, 1),
-					new HexPoint(-1, 1, 0));
-				break;
-			case I:
-				retval = new Tetromino(
-					"I",
-					tetrominoColor(220.0f),
-					new HexPoint(-2, 0, 2),
-					new HexPoint(-1, 0, 1),
-					new HexPoint(0, 0, 0),
-					new HexPoint(1, 0, -1));
-				break;
-
-			case S:
-				retval = new Tetromino(
-					"S",
-					tetrominoColor(256.0f),
-					new HexPoint(-1, 0, 1),
-					new HexPoint(0, 0, 0),
-					new HexPoint(0, 1, -1),
-					new HexPoint(1, 1, -2));
-				break;
-
-			case Z:
-				retval = new Tetromino(
-					"Z",
-					tetrominoColor(292.0f),
-					new HexPoint(1, 0, -1),
-					new HexPoint(0, 0, 0),
-					new HexPoint(-1, 1, 0),
-					new HexPoint(-2, 1, 1));
-				break;
+			this.points = new MutableHexPoint[shape.getPointCount()];
+			for (int i = 0; i < this.points.length; i++)
+				this.points[i] = new MutableHexPoint(0, 0, 0);
+		}
+	}
 
-			case L:
-				retval = new Tetromino(
-					"L",
-					tetrominoColor(328.0f),
-					new HexPoint(-2, 1, 1),
-					new HexPoint(-1, 0, 1),
-					new HexPoint(0, 0, 0),
-					new HexPoint(1, 0, -1));
-				break;
 
-			case J:
-				retval = new Tetromino(
-					"J",
-					tetrominoColor(4.0f),
-					new HexPoint(1, 1, -2),
-					new HexPoint(1, 0, -1),
-					new HexPoint(0, 0, 0),
-					new HexPoint(-1, 0, 1));
-				break;
+	/**
+	 * Create a tetromino of the given type.
+	 *
+	 * @param type The type.
+	 * @return Tetromino.
+	 */
+	public static Tetromino tetrominoWithType(Type type)
+	{
+		return new Tetromino(type);
+	}
 
-			case O:
-				retval = new Tetromino(
-					"O",
-					tetrominoColor(40.0f),
-					new HexPoint(-1, 0, 1),
-					new HexPoint(-1, 1, 0),
-					new HexPoint(0, 0, 0),
-					new HexPoint(0, 1, -1));
-				break;
 
-			case T1:
-				retval = new Tetromino(
-					"T1",
-					tetrominoColor(76.0f),
-					new HexPoint(-1, 0, 1),
-					new HexPoint(0, 0, 0),
-					new HexPoint(1, 0, -1),
-					new HexPoint(-1, 1, 0));
-				break;
+	/**
+	 * Find the orientation and the location in which the tetromino occupies
+	 * the given points and move the tetromino there.
+	 *
+	 * @param points The points.
+	 * @return true if the points form the shape of the tetromino.
+	 */
+	private boolean placeOn(HexPoint[] points)
+	{
+		// The orthogonal co-ordinates are consistent on non-negative rows, so
+		// move the points up by an even number of rows first.
+		int minY = 0;
+		for (HexPoint point : points)
+			minY = Math.min(minY, point.getY());
+		int dy = 2 * ((1 - minY) / 2);
+
+		boolean retval = false;
+		int h = Integer.MAX_VALUE;
+		int minH = Integer.MAX_VALUE;
+		int[] horizontalOffsets = new int[points.length];
+		int[] verticalOffsets = new int[points.length];
+		for (int i = 0; i < points.length; i++)
+		{
+			horizontalOffsets[i] = HexPoint.horizontalOffset(points[i].getX() - dy / 2, points[i].getY() + dy);
+			verticalOffsets[i] = points[i].getY() + dy;
+			h = Math.min(h, verticalOffsets[i]);
+			minH = Math.min(minH, horizontalOffsets[i]);
+		}
 
-			case T2:
-				retval = new Tetromino(
-					"T2",
-					tetrominoColor(112.0f),
-					new HexPoint(-1, 0, 1),
-					new HexPoint(0, 0, 0),
-					new HexPoint(1, 0, -1),
-					new HexPoint(0, 1, -1));
-				break;
+		for (int o = 0; o < TetrominoShape.ORIENTATIONS && !retval; o++)
+		{
+			TetrominoShape shape = TetrominoShape.valueOf(this.type, o, h);
+			if (shape.getPointCount() != points.length)
+				continue;
+
+			// Match each point to a distinct point of the shape.
+			int w = minH - shape.getMinHorizontalOffset();
+			long matched = 0;
+			for (int j = 0; j < points.length; j++)
+			{
+				for (int i = 0; i < shape.getPointCount(); i++)
+				{
+					if (0 == (matched & (1L << i)) &&
+						w + shape.getHorizontalOffset(i) == horizontalOffsets[j] &&
+						h + shape.getVerticalOffset(i) == verticalOffsets[j])
+					{
+						matched |= (1L << i);
+						break;
+					}
+				}
+			}
+			retval = ((1L << points.length) - 1 == matched);
 
-			case Y:
-				retval = new Tetromino(
-					"Y",
-					tetrominoColor(148.0f),
-					new HexPoint(0, 0, 0),
-					new HexPoint(1, -1, 0),
-					new HexPoint(-1, 0, 1),
-					new HexPoint(0, 1, -1));
-				break;
+			if (retval)
+			{
+				this.orientation = o;
+				this.moveTo(w, h - dy);
+			}
 		}
 		return retval;
 	}
 
 
-	private static Color tetrominoColor(float angle)
+	/**
+	 * Calculate the points from the shape and the location if they have
+	 * changed.
+	 *
+	 * @return The points.
+	 */
+	private MutableHexPoint[] updatedPoints()
 	{
-		int rgb = Color.HSBtoRGB(angle / 360.0f, SATURATION, BRIGHTNESS);
-		return new Color(rgb);
+		if (!this.pointsValid)
+		{
+			TetrominoShape shape = TetrominoShape.valueOf(this.type, this.orientation, this.h);
+			for (int i = 0; i < this.points.length; i++)
+				this.points[i].assignOffsets(this.w + shape.getHorizontalOffset(i), this.h + shape.getVerticalOffset(i));
+			this.pointsValid = true;
+		}
+		return this.points;
 	}
 
 
 	/**
-	 * The points occupied by the tetromino.
+	 * The points occupied by the tetromino. The returned view is updated
+	 * when the tetromino moves.
 	 *
 	 * @return The points.
 	 */
 	public Collection<? extends HexPoint> getPoints()
 	{
-		return Collections.unmodifiableList(Arrays.asList(points));
+		return this.pointsView;
+	}
+
+
+	/**
+	 * Zobrist hash of the points occupied by the tetromino. The points
+	 * determine the type, the position and the orientation of the tetromino,
+	 * so combining the hash with GameBoard.stateHash with XOR gives a key for
+	 * the position of the game.
+	 *
+	 * @return The hash.
+	 * @see ZobristKeys#pieceKey(int)
+	 */
+	public long stateHash()
+	{
+		long retval = 0;
+		TetrominoShape shape = TetrominoShape.valueOf(this.type, this.orientation, this.h);
+		for (int i = 0; i < shape.getPointCount(); i++)
+			retval ^= ZobristKeys.pieceKey(HexPoint.packOffsets(this.w + shape.getHorizontalOffset(i), this.h + shape.getVerticalOffset(i)));
+		return retval;
 	}
 
 
@@ -212,6 +274,18 @@ public class Tetromino
 	}
 
 
+	/**
+	 * The palette index of the colour.
+	 *
+	 * @return An index.
+	 * @see TilePalette
+	 */
+	public byte getTile()
+	{
+		return this.tile;
+	}
+
+
 	/**
 	 * The name.
 	 *
@@ -223,6 +297,51 @@ public class Tetromino
 	}
 
 
+	/**
+	 * The type.
+	 *
+	 * @return The type.
+	 */
+	public Type getType()
+	{
+		return this.type;
+	}
+
+
+	/**
+	 * The number of clockwise rotations from the initial orientation.
+	 *
+	 * @return A number in [0, 5].
+	 * @see TetrominoShape#valueOf(Type, int, int)
+	 */
+	public int getOrientation()
+	{
+		return this.orientation;
+	}
+
+
+	/**
+	 * Location along the orthogonal X axis.
+	 *
+	 * @return The co-ordinate.
+	 */
+	public int getW()
+	{
+		return this.w;
+	}
+
+
+	/**
+	 * Location along the orthogonal Y axis, i.e. the lowest row.
+	 *
+	 * @return The co-ordinate.
+	 */
+	public int getH()
+	{
+		return this.h;
+	}
+
+
 	/**
 	 * Move the tetromino along the orthogonal axes.
 	 *
@@ -231,10 +350,9 @@ public class Tetromino
 	 */
 	public void moveTo(int w, int h)
 	{
-		int dw = w - this.w;
-		int dh = h - this.h;
-
-		this.applyTranslation(dw, dh);
+		this.w = w;
+		this.h = h;
+		this.pointsValid = false;
 	}
 
 
@@ -245,8 +363,7 @@ public class Tetromino
 	 */
 	public void moveLeft(GameBoard gb)
 	{
-		if (gb.hasSpaceLeft(Arrays.asList(this.points)))
-			this.applyTranslation(-1, 0);
+		this.checkAvailabilityAndMove(gb, this.orientation, this.w - 1);
 	}
 
 
@@ -257,44 +374,31 @@ public class Tetromino
 	 */
 	public void moveRight(GameBoard gb)
 	{
-		if (gb.hasSpaceRight(Arrays.asList(this.points)))
-			this.applyTranslation(1, 0);
+		this.checkAvailabilityAndMove(gb, this.orientation, this.w + 1);
 	}
 
 
 	/**
-	 * Rotate the tetromino clockwise.
+	 * Rotate the tetromino clockwise. The lowest row and the horizontal
+	 * co-ordinate stay the same.
 	 *
 	 * @param gb The game board to check.
 	 */
 	public void rotateCW(GameBoard gb)
 	{
-		int[][] transform =
-		{
-			{0, -1, 0, 0},
-			{0, 0, -1, 0},
-			{-1, 0, 0, 0},
-			{0, 0, 0, 1},
-		};
-		this.checkAvailabilityAndTransform(gb, transform);
+		this.checkAvailabilityAndMove(gb, (1 + this.orientation) % TetrominoShape.ORIENTATIONS, this.w);
 	}
 
 
 	/**
-	 * Rotate the tetromino counterclockwise.
+	 * Rotate the tetromino counterclockwise. The lowest row and the horizontal
+	 * co-ordinate stay the same.
 	 *
 	 * @param gb The game board to check.
 	 */
 	public void rotateCCW(GameBoard gb)
 	{
-		int[][] transform =
-		{
-			{0, 0, -1, 0},
-			{-1, 0, 0, 0},
-			{0, -1, 0, 0},
-			{0, 0, 0, 1},
-		};
-		this.checkAvailabilityAndTransform(gb, transform);
+		this.checkAvailabilityAndMove(gb, (TetrominoShape.ORIENTATIONS - 1 + this.orientation) % TetrominoShape.ORIENTATIONS, this.w);
 	}
 
 
@@ -309,19 +413,19 @@ public class Tetromino
 	public int dropOne(Trajectory trajectory, GameBoard gb)
 	{
 		int retval = -1;
-		Collection<HexPoint> nextPoints = trajectory.nextPoints(Arrays.asList(points), gb);
+		int nextW = trajectory.nextW(this.type, this.orientation, this.w, this.h, gb);
 
-		if (null == nextPoints)
-			retval = gb.occupySpace(points, color);
+		if (Trajectory.NO_SPACE == nextW)
+		{
+			retval = gb.occupySpace(this.updatedPoints(), this.tile);
+			// The game board may have reordered the points.
+			this.pointsValid = false;
+		}
 		else
 		{
-			int i = 0;
-			for (HexPoint point : nextPoints)
-			{
-				points[i].copyFrom(point);
-				i++;
-			}
+			this.w = nextW;
 			this.h--;
+			this.pointsValid = false;
 		}
 		return retval;
 	}
@@ -336,65 +440,40 @@ public class Tetromino
 	 */
 	public Pair<Integer, Integer> drop(Trajectory trajectory, GameBoard gb)
 	{
-		int distance = 0;
-		int lines = 0;
-		while (-1 == (lines = this.dropOne(trajectory, gb)))
-			distance++;
+		int location = trajectory.landingLocation(this.type, this.orientation, this.w, this.h, gb);
+		int distance = this.h - HexPoint.packedY(location);
+		this.w = HexPoint.packedHorizontalOffset(location);
+		this.h = HexPoint.packedY(location);
+		this.pointsValid = false;
+
+		// The tetromino cannot move further, so this occupies the space.
+		int lines = this.dropOne(trajectory, gb);
 		return new Pair<Integer, Integer>(distance, lines);
 	}
 
 
 	/**
-	 * Transform if possible.
+	 * Rotate or move horizontally if possible.
 	 *
 	 * @param gb The game board to check.
-	 * @param transform The transformation.
+	 * @param orientation The new orientation.
+	 * @param w The new horizontal co-ordinate.
 	 */
-	protected void checkAvailabilityAndTransform(GameBoard gb, int[][] transform)
+	protected void checkAvailabilityAndMove(GameBoard gb, int orientation, int w)
 	{
-		MutableHexPoint newShapePoints[] = new MutableHexPoint[this.shapePoints.length];
-		MutableHexPoint newPoints[] = new MutableHexPoint[this.shapePoints.length];
-		int minY = 0;
-		for (int i = 0; i < this.shapePoints.length; i++)
-		{
-			newShapePoints[i] = this.shapePoints[i].mutableClone();
-			newShapePoints[i].transform(transform);
-			minY = Math.min(minY, newShapePoints[i].getY());
-		}
-
-		for (int i = 0; i < this.shapePoints.length; i++)
-			newPoints[i] = newShapePoints[i].mutableClone();
-		HexPoint.applyOrthogonalTranslation(Arrays.asList(newPoints), this.w, this.h - minY);
-
-		if (gb.areAllValidAndVacant(Arrays.asList(newPoints)))
+		if (gb.canPlace(this.type, orientation, w, this.h))
 		{
-			for (int i = 0; i < this.shapePoints.length; i++)
-			{
-				this.shapePoints[i].copyFrom(newShapePoints[i]);
-				this.points[i].copyFrom(newPoints[i]);
-			}
+			this.orientation = orientation;
+			this.w = w;
+			this.pointsValid = false;
 		}
 	}
 
 
-	/**
-	 * Apply a transformation along orthogonal axes.
-	 *
-	 * @param dw Horizontal distance.
-	 * @param dh vertical distance.
-	 */
-	protected void applyTranslation(int dw, int dh)
-	{
-		HexPoint.applyOrthogonalTranslation(points, dw, dh);
-		this.w += dw;
-		this.h += dh;
-	}
-
-
 	@Override
 	public String toString()
 	{
-		return String.format("Tetromino %s w: %d h: %d points: (%s)",
-			this.name, this.w, this.h, StringUtils.join(points, ", "));
+		return String.format("Tetromino %s orientation: %d w: %d h: %d points: (%s)",
+			this.name, this.orientation, this.w, this.h, StringUtils.join(this.updatedPoints(), ", "));
 	}
 }
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.util.Arrays;
+
+
+/**
+ * Precomputed shape of a tetromino in one orientation.
+ *
+ * The shapes are normalized so that their lowest row is at the tetromino's
+ * vertical co-ordinate h. Since odd rows are offset by half a point, the
+ * horizontal offsets of the points depend on the parity of h, and there is a
+ * separate shape for both parities. The points are listed in the same order
+ * in every orientation.
+ *
+ * @author tsnorri
+ */
+public final class TetrominoShape
+{
+	/**
+	 * The number of orientations, i.e. clockwise 60° rotations.
+	 */
+	public static final int ORIENTATIONS = 6;
+
+	// Indexed by type, orientation and parity.
+	private static final TetrominoShape[][][] shapes;
+	// Indexed by type.
+	private static final int[] orientationCounts;
+	private static final int[] originOffsets;
+
+	private final int[] horizontalOffsets;
+	private final int[] verticalOffsets;
+	private final long[] rowMasks;
+	private final int minHorizontalOffset;
+	private final int maxHorizontalOffset;
+
+	static
+	{
+		Tetromino.Type[] types = Tetromino.Type.values();
+		shapes = new TetrominoShape[types.length][ORIENTATIONS][2];
+		originOffsets = new int[types.length];
+		for (Tetromino.Type type : types)
+		{
+			HexPoint[] basePoints = basePoints(type);
+			for (HexPoint point : basePoints)
+				originOffsets[type.ordinal()] = Math.min(originOffsets[type.ordinal()], point.getY());
+
+			for (int i = 0; i < ORIENTATIONS; i++)
+			{
+				HexPoint[] rotated = new HexPoint[basePoints.length];
+				HexTransform rotation = HexTransform.rotation(i);
+				int minY = Integer.MAX_VALUE;
+				for (int j = 0; j < basePoints.length; j++)
+				{
+					rotated[j] = basePoints[j].transformedCopy(rotation);
+					minY = Math.min(minY, rotated[j].getY());
+				}
+
+				HexPoint[] normalized = HexPoint.copyWithOrthogonalTranslation(rotated, 0, -minY);
+				for (int parity = 0; parity < 2; parity++)
+				{
+					HexPoint[] placed = HexPoint.copyWithOrthogonalTranslation(normalized, 0, parity);
+					shapes[type.ordinal()][i][parity] = new TetrominoShape(placed, parity);
+				}
+			}
+		}
+
+		// The orientations repeat with a period that divides their number.
+		orientationCounts = new int[types.length];
+		for (Tetromino.Type type : types)
+		{
+			TetrominoShape[][] typeShapes = shapes[type.ordinal()];
+			int count = ORIENTATIONS;
+			for (int i = 1; i < ORIENTATIONS; i++)
+			{
+				if (0 == ORIENTATIONS % i && typeShapes[0][0].hasSamePoints(typeShapes[i][0]) &&
+					typeShapes[0][1].hasSamePoints(typeShapes[i][1]))
+				{
+					count = i;
+					break;
+				}
+			}
+			orientationCounts[type.ordinal()] = count;
+		}
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param points The points of the shape, lowest row at the given parity.
+	 * @param parity The parity of the lowest row.
+	 */
+	private TetrominoShape(HexPoint[] points, int parity)
+	{
+		this.horizontalOffsets = new int[points.length];
+		this.verticalOffsets = new int[points.length];
+
+		int minH = Integer.MAX_VALUE;
+		int maxH = Integer.MIN_VALUE;
+		int maxV = 0;
+		for (int i = 0; i < points.length; i++)
+		{
+			int h = points[i].getHorizontalOffset();
+			int v = points[i].getY() - parity;
+			this.horizontalOffsets[i] = h;
+			this.verticalOffsets[i] = v;
+			minH = Math.min(minH, h);
+			maxH = Math.max(maxH, h);
+			maxV = Math.max(maxV, v);
+		}
+
+		this.minHorizontalOffset = minH;
+		this.maxHorizontalOffset = maxH;
+		this.rowMasks = new long[1 + maxV];
+		for (int i = 0; i < points.length; i++)
+			this.rowMasks[this.verticalOffsets[i]] |= (1L << (this.horizontalOffsets[i] - minH));
+	}
+
+
+	/**
+	 * The points of the given tetromino type in its initial orientation.
+	 *
+	 * @param type The type.
+	 * @return The points.
+	 */
+	static HexPoint[] basePoints(Tetromino.Type type)
+	{
+		HexPoint[] retval = null;
+		switch (type)
+		{
+			case C:
+				retval = new HexPoint[] {
+					new HexPoint(1, -1, 0),
+					new HexPoint(0, -1, 1),
+					new HexPoint(-1, 0, 1),
+					new HexPoint(-1, 1, 0)
+				};
+				break;
+
+			case I:
+				retval = new HexPoint[] {
+					new HexPoint(-2, 0, 2),
+					new HexPoint(-1, 0, 1),
+					new HexPoint(0, 0, 0),
+					new HexPoint(1, 0, -1)
+				};
+				break;
+
+			case S:
+				retval = new HexPoint[] {
+					new HexPoint(-1, 0, 1),
+					new HexPoint(0, 0, 0),
+					new HexPoint(0, 1, -1),
+					new HexPoint(1, 1, -2)
+				};
+				break;
+
+			case Z:
+				retval = new HexPoint[] {
+					new HexPoint(1, 0, -1),
+					new HexPoint(0, 0, 0),
+					new HexPoint(-1, 1, 0),
+					new HexPoint(-2, 1, 1)
+				};
+				break;
+
+			case L:
+				retval = new HexPoint[] {
+					new HexPoint(-2, 1, 1),
+					new HexPoint(-1, 0, 1),
+					new HexPoint(0, 0, 0),
+					new HexPoint(1, 0, -1)
+				};
+				break;
+
+			case J:
+				retval = new HexPoint[] {
+					new HexPoint(1, 1, -2),
+					new HexPoint(1, 0, -1),
+					new HexPoint(0, 0, 0),
+					new HexPoint(-1, 0, 1)
+				};
+				break;
+
+			case O:
+				retval = new HexPoint[] {
+					new HexPoint(-1, 0, 1),
+					new HexPoint(-1, 1, 0),
+					new HexPoint(0, 0, 0),
+					new HexPoint(0, 1, -1)
+				};
+				break;
+
+			case T1:
+				retval = new HexPoint[] {
+					new HexPoint(-1, 0, 1),
+					new HexPoint(0, 0, 0),
+					new HexPoint(1, 0, -1),
+					new HexPoint(-1, 1, 0)
+				};
+				break;
+
+			case T2:
+				retval = new HexPoint[] {
+					new HexPoint(-1, 0, 1),
+					new HexPoint(0, 0, 0),
+					new HexPoint(1, 0, -1),
+					new HexPoint(0, 1, -1)
+				};
+				break;
+
+			case Y:
+				retval = new HexPoint[] {
+					new HexPoint(0, 0, 0),
+					new HexPoint(1, -1, 0),
+					new HexPoint(-1, 0, 1),
+					new HexPoint(0, 1, -1)
+				};
+				break;
+		}
+		return retval;
+	}
+
+
+	/**
+	 * The shape of the given tetromino.
+	 *
+	 * @param type The type.
+	 * @param orientation The number of clockwise rotations, may be negative.
+	 * @param h The vertical co-ordinate of the tetromino.
+	 * @return The shape.
+	 */
+	public static TetrominoShape valueOf(Tetromino.Type type, int orientation, int h)
+	{
+		int o = orientation % ORIENTATIONS;
+		if (o < 0)
+			o += ORIENTATIONS;
+		return shapes[type.ordinal()][o][h & 1];
+	}
+
+
+	/**
+	 * The number of distinct orientations of the given tetromino type.
+	 *
+	 * Orientation i looks the same as orientation i + n, where n is the
+	 * returned number, apart from a possible horizontal translation. Hence
+	 * orientations 0 to n - 1 cover every placement of the tetromino.
+	 *
+	 * @param type The type.
+	 * @return 1, 2, 3 or 6.
+	 */
+	public static int getOrientationCount(Tetromino.Type type)
+	{
+		return orientationCounts[type.ordinal()];
+	}
+
+
+	/**
+	 * The vertical offset of the lowest row from the origin of the base
+	 * points of the given tetromino type in its initial orientation. Adding
+	 * the offset to the row of the origin gives the tetromino's vertical
+	 * co-ordinate h.
+	 *
+	 * @param type The type.
+	 * @return The offset, zero or negative.
+	 */
+	public static int getOriginOffset(Tetromino.Type type)
+	{
+		return originOffsets[type.ordinal()];
+	}
+
+
+	/**
+	 * Check whether the other shape covers the same points as this one,
+	 * possibly translated horizontally. The order of the points is ignored.
+	 *
+	 * @param other The other shape.
+	 * @return Boolean.
+	 */
+	private boolean hasSamePoints(TetrominoShape other)
+	{
+		// The masks are relative to the leftmost point.
+		return Arrays.equals(this.rowMasks, other.rowMasks);
+	}
+
+
+	/**
+	 * The number of points.
+	 *
+	 * @return The number.
+	 */
+	public int getPointCount()
+	{
+		return this.horizontalOffsets.length;
+	}
+
+
+	/**
+	 * The horizontal offset of a point relative to the tetromino's horizontal
+	 * co-ordinate w.
+	 *
+	 * @param i The index of the point.
+	 * @return The offset.
+	 */
+	public int getHorizontalOffset(int i)
+	{
+		return this.horizontalOffsets[i];
+	}
+
+
+	/**
+	 * The vertical offset of a point relative to the tetromino's vertical
+	 * co-ordinate h.
+	 *
+	 * @param i The index of the point.
+	 * @return The offset, non-negative.
+	 */
+	public int getVerticalOffset(int i)
+	{
+		return this.verticalOffsets[i];
+	}
+
+
+	/**
+	 * The least horizontal offset of the points.
+	 *
+	 * @return The offset.
+	 */
+	public int getMinHorizontalOffset()
+	{
+		return this.minHorizontalOffset;
+	}
+
+
+	/**
+	 * The greatest horizontal offset of the points.
+	 *
+	 * @return The offset.
+	 */
+	public int getMaxHorizontalOffset()
+	{
+		return this.maxHorizontalOffset;
+	}
+
+
+	/**
+	 * The number of rows spanned by the shape.
+	 *
+	 * @return The number.
+	 */
+	public int getRowCount()
+	{
+		return this.rowMasks.length;
+	}
+
+
+	/**
+	 * The points on the given row as a bitmask. Bit i is set if the point
+	 * with horizontal offset getMinHorizontalOffset() + i is included.
+	 *
+	 * @param dv The vertical offset of the row.
+	 * @return The mask.
+	 */
+	public long getRowMask(int dv)
+	{
+		return this.rowMasks[dv];
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("TetrominoShape horizontal offsets: %s vertical offsets: %s",
+			Arrays.toString(this.horizontalOffsets), Arrays.toString(this.verticalOffsets));
+	}
+}
@@ -28,4 +28,12 @@ public interface TetrominoSource
 	 * Create a new tetromino.
 	 */
 	public void createTetromino ();
+
+	/**
+	 * Return a tetromino that is no longer used so that it may be reused by
+	 * createTetromino.
+	 *
+	 * @param tetromino The tetromino.
+	 */
+	public void recycleTetromino (Tetromino tetromino);
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Registry of the tile colours. The game boards store a one-byte index per
+ * occupied point and look the colour up here.
+ *
+ * The indices of the tetromino types are fixed; other colours are registered
+ * on demand and keep their index for the lifetime of the program.
+ *
+ * @author tsnorri
+ */
+public final class TilePalette
+{
+	/**
+	 * The index of a vacant point.
+	 */
+	public static final byte EMPTY = 0;
+
+	private static final int CAPACITY = 256;
+	private static final float SATURATION = 1.0f;
+	private static final float BRIGHTNESS = 0.4f;
+	// Hues of the tetromino colours in the order of Tetromino.Type.
+	private static final float[] HUES = {184.0f, 220.0f, 256.0f, 292.0f, 328.0f, 4.0f, 40.0f, 76.0f, 112.0f, 148.0f};
+
+	// Replaced with a copy when a colour is registered so that the lookups need no locking.
+	private static volatile Color[] colors = new Color[CAPACITY];
+	private static final Map<Color, Byte> indices = new HashMap<Color, Byte>();
+	private static int count = 1;
+
+	static
+	{
+		// Called from the initializer, so no locking is needed.
+		Tetromino.Type[] types = Tetromino.Type.values();
+		for (int i = 0; i < types.length; i++)
+		{
+			int rgb = Color.HSBtoRGB(HUES[i] / 360.0f, SATURATION, BRIGHTNESS);
+			register(new Color(rgb));
+		}
+	}
+
+
+	/**
+	 * Constructor.
+	 */
+	private TilePalette()
+	{
+	}
+
+
+	private static byte register(Color color)
+	{
+		if (CAPACITY == count)
+			throw new IllegalStateException("Tile palette is full.");
+
+		byte retval = (byte) count;
+		Color[] newColors = colors.clone();
+		newColors[count] = color;
+		colors = newColors;
+		indices.put(color, retval);
+		count++;
+		return retval;
+	}
+
+
+	/**
+	 * The index of the colour of the given tetromino type.
+	 *
+	 * @param type The type.
+	 * @return The index.
+	 */
+	public static byte indexForType(Tetromino.Type type)
+	{
+		return (byte) (1 + type.ordinal());
+	}
+
+
+	/**
+	 * The colour of the given tetromino type.
+	 *
+	 * @param type The type.
+	 * @return The colour.
+	 */
+	public static Color colorForType(Tetromino.Type type)
+	{
+		return colors[1 + type.ordinal()];
+	}
+
+
+	/**
+	 * The index of the given colour. Registers the colour if needed.
+	 *
+	 * @param color The colour, not null.
+	 * @return The index.
+	 * @throws IllegalStateException if there is no room for new colours.
+	 */
+	public static synchronized byte indexForColor(Color color)
+	{
+		if (null == color)
+			throw new IllegalArgumentException("Color must not be null.");
+
+		Byte retval = indices.get(color);
+		if (null == retval)
+			retval = register(color);
+		return retval;
+	}
+
+
+	/**
+	 * The indices of the given colours. Registers the colours that have not
+	 * been registered if they fit in the palette without taking the last
+	 * reserved indices; otherwise registers none of them.
+	 *
+	 * @param colors The colours, not null.
+	 * @param indices Filled with the index of each colour.
+	 * @param reserved The number of indices to leave free.
+	 * @return true if every colour has an index.
+	 */
+	public static synchronized boolean indicesForColors(Color[] colors, byte[] indices, int reserved)
+	{
+		Set<Color> unregistered = new HashSet<Color>();
+		for (Color color : colors)
+		{
+			if (null == color)
+				throw new IllegalArgumentException("Color must not be null.");
+			if (!TilePalette.indices.containsKey(color))
+				unregistered.add(color);
+		}
+
+		boolean retval = (count + unregistered.size() <= CAPACITY - reserved);
+		if (retval)
+		{
+			for (int i = 0; i < colors.length; i++)
+				indices[i] = indexForColor(colors[i]);
+		}
+		return retval;
+	}
+
+
+	/**
+	 * The colour with the given index.
+	 *
+	 * @param index The index.
+	 * @return The colour or null if index is EMPTY or has not been registered.
+	 */
+	public static Color colorForIndex(byte index)
+	{
+		// Indices are stored as signed bytes.
+		return colors[index & 0xff];
+	}
+}
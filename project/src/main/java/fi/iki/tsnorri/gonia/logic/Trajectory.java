@@ -35,6 +35,20 @@ public class Trajectory
 	 */
 	abstract static class Specific
 	{
+		/**
+		 * Next points on the trajectory. Does not allocate memory.
+		 *
+		 * @param points The current location as packed points.
+		 * @param count The number of points.
+		 * @param nextPoints The buffer for the next location. May be the same
+		 * as points.
+		 * @param gameBoard The game board.
+		 * @return The packed translation from the current location to the
+		 * next one or NO_SPACE, in which case nextPoints is not modified.
+		 */
+		protected abstract int nextPoints(int[] points, int count, int[] nextPoints, GameBoard gameBoard);
+
+
 		/**
 		 * Next points on the trajectory.
 		 *
@@ -42,28 +56,61 @@ public class Trajectory
 		 * @param gameBoard The game board.
 		 * @return The next points or null if no space is available.
 		 */
-		protected abstract Collection<HexPoint> nextPoints(Collection<? extends HexPoint> currentPoints, GameBoard gameBoard);
+		public Collection<HexPoint> nextPoints(Collection<? extends HexPoint> currentPoints, GameBoard gameBoard)
+		{
+			int[] points = new int[currentPoints.size()];
+			int i = 0;
+			for (HexPoint point : currentPoints)
+			{
+				points[i] = point.pack();
+				i++;
+			}
+
+			if (NO_SPACE == nextPoints(points, points.length, points, gameBoard))
+				return null;
+
+			HexPoint[] retval = new HexPoint[points.length];
+			for (i = 0; i < points.length; i++)
+				retval[i] = HexPoint.unpack(points[i]);
+			return Arrays.asList(retval);
+		}
 
 
 		/**
-		 * All remaining points on the trajectory.
+		 * A possible next location of a tetromino. The candidates are tried
+		 * in order until the tetromino fits.
 		 *
-		 * @param currentPoints The current location.
-		 * @param gameBoard The game borad.
-		 * @return The remaining points or null if no space is available.
+		 * @param type The type of the tetromino.
+		 * @param orientation The orientation of the tetromino.
+		 * @param w The current horizontal co-ordinate.
+		 * @param h The current vertical co-ordinate.
+		 * @param i The index of the candidate.
+		 * @return The horizontal co-ordinate of the candidate or NO_SPACE if
+		 * there are no more candidates. The vertical co-ordinate is h - 1.
 		 */
-		public Set<HexPoint> remainingPoints(Collection<? extends HexPoint> currentPoints, GameBoard gameBoard)
-		{
-			// We don't cache the calculated trajectory since it isn't very long.
-			Set<HexPoint> remainingPoints = new TreeSet<HexPoint>(new HexPoint.Comparator());
-			Collection<? extends HexPoint> nextPoints = currentPoints;
-			while (null != (nextPoints = nextPoints(nextPoints, gameBoard)))
-				remainingPoints.addAll(nextPoints);
+		protected abstract int candidateW(Tetromino.Type type, int orientation, int w, int h, int i);
 
-			if (0 == remainingPoints.size())
-				remainingPoints = null;
 
-			return remainingPoints;
+		/**
+		 * Next location of a tetromino on the trajectory.
+		 *
+		 * @param type The type of the tetromino.
+		 * @param orientation The orientation of the tetromino.
+		 * @param w The current horizontal co-ordinate.
+		 * @param h The current vertical co-ordinate.
+		 * @param gameBoard The game board.
+		 * @return The next horizontal co-ordinate or NO_SPACE. The vertical
+		 * co-ordinate is h - 1.
+		 */
+		protected int nextW(Tetromino.Type type, int orientation, int w, int h, GameBoard gameBoard)
+		{
+			int candidate;
+			for (int i = 0; NO_SPACE != (candidate = candidateW(type, orientation, w, h, i)); i++)
+			{
+				if (gameBoard.canPlace(type, orientation, candidate, h - 1))
+					return candidate;
+			}
+			return NO_SPACE;
 		}
 	}
 
@@ -75,7 +122,7 @@ public class Trajectory
 	 */
 	static class Diagonal extends Specific
 	{
-		protected int[][] transformation;
+		protected int packedTranslation;
 		Vertical vertical;
 
 
@@ -86,7 +133,7 @@ public class Trajectory
 		 */
 		public Diagonal(boolean moveRight)
 		{
-			this.transformation = HexPoint.translationTransformation(0, -1, moveRight);
+			this.packedTranslation = HexPoint.packedOrthogonalTranslation(0, -1, moveRight);
 		}
 
 
@@ -105,34 +152,68 @@ public class Trajectory
 		/**
 		 * The next points on the trajectory in the axis direction.
 		 *
-		 * @param currentPoints The current location.
+		 * @param points The current location as packed points.
+		 * @param count The number of points.
+		 * @param nextPoints The buffer for the next location.
 		 * @param gameBoard The game borad.
-		 * @return The next points or null if no space is available.
+		 * @return The packed translation or NO_SPACE.
 		 */
-		protected Collection<HexPoint> nextDiagonalPoints(Collection<? extends HexPoint> currentPoints, GameBoard gameBoard)
+		protected int nextDiagonalPoints(int[] points, int count, int[] nextPoints, GameBoard gameBoard)
 		{
-			HexPoint[] points = new HexPoint[currentPoints.size()];
-			int i = 0;
-			for (HexPoint point : currentPoints)
+			// Check the space first so that the buffer is not modified if the move fails.
+			for (int i = 0; i < count; i++)
 			{
-				points[i] = point.transformedCopy(transformation);
-				if (!gameBoard.isValidAndVacant(points[i]))
-					return null;
-
-				i++;
+				if (!gameBoard.isValidAndVacant(points[i] + packedTranslation))
+					return NO_SPACE;
 			}
-			return Arrays.asList(points);
+
+			for (int i = 0; i < count; i++)
+				nextPoints[i] = points[i] + packedTranslation;
+			return packedTranslation;
+		}
+
+
+		/**
+		 * The next location of a tetromino in the axis direction, whether or
+		 * not the tetromino fits there.
+		 *
+		 * @param type The type of the tetromino.
+		 * @param orientation The orientation of the tetromino.
+		 * @param w The current horizontal co-ordinate.
+		 * @param h The current vertical co-ordinate.
+		 * @return The next horizontal co-ordinate.
+		 */
+		protected int diagonalW(Tetromino.Type type, int orientation, int w, int h)
+		{
+			// Translating the tetromino moves every point by the same amount,
+			// so the new location may be calculated from any of them.
+			TetrominoShape shape = TetrominoShape.valueOf(type, orientation, h);
+			int packed = HexPoint.packOffsets(w + shape.getHorizontalOffset(0), h + shape.getVerticalOffset(0));
+			int nextH = HexPoint.packedHorizontalOffset(packed + packedTranslation);
+
+			TetrominoShape nextShape = TetrominoShape.valueOf(type, orientation, h - 1);
+			return nextH - nextShape.getHorizontalOffset(0);
 		}
 
 
 		@Override
-		protected Collection<HexPoint> nextPoints(Collection<? extends HexPoint> currentPoints, GameBoard gameBoard)
+		protected int nextPoints(int[] points, int count, int[] nextPoints, GameBoard gameBoard)
 		{
-			Collection<HexPoint> retval = nextDiagonalPoints(currentPoints, gameBoard);
-			if (null == retval)
-				retval = vertical.nextPoints(currentPoints, gameBoard);
+			int retval = nextDiagonalPoints(points, count, nextPoints, gameBoard);
+			if (NO_SPACE == retval)
+				retval = vertical.nextPoints(points, count, nextPoints, gameBoard);
 			return retval;
 		}
+
+
+		@Override
+		protected int candidateW(Tetromino.Type type, int orientation, int w, int h, int i)
+		{
+			// Fall back to the vertical trajectory.
+			if (0 == i)
+				return diagonalW(type, orientation, w, h);
+			return vertical.candidateW(type, orientation, w, h, i - 1);
+		}
 	}
 
 
@@ -162,22 +243,40 @@ public class Trajectory
 
 
 		@Override
-		protected Collection<HexPoint> nextPoints(Collection<? extends HexPoint> currentPoints, GameBoard gameBoard)
+		protected int nextPoints(int[] points, int count, int[] nextPoints, GameBoard gameBoard)
 		{
 			int min = Integer.MAX_VALUE;
-			for (HexPoint point : currentPoints)
-				min = Math.min(min, point.getY());
+			for (int i = 0; i < count; i++)
+				min = Math.min(min, HexPoint.packedY(points[i]));
 
 			int idx = Math.abs(min % 2);
-			Collection<HexPoint> nextPoints = diagonals[idx].nextDiagonalPoints(currentPoints, gameBoard);
-			if (null == nextPoints)
-				nextPoints = diagonals[(1 + idx) % 2].nextDiagonalPoints(currentPoints, gameBoard);
+			int retval = diagonals[idx].nextDiagonalPoints(points, count, nextPoints, gameBoard);
+			if (NO_SPACE == retval)
+				retval = diagonals[(1 + idx) % 2].nextDiagonalPoints(points, count, nextPoints, gameBoard);
 
-			return nextPoints;
+			return retval;
+		}
+
+
+		@Override
+		protected int candidateW(Tetromino.Type type, int orientation, int w, int h, int i)
+		{
+			// The shapes are normalized so that h is the lowest row.
+			int retval = NO_SPACE;
+			if (i < 2)
+				retval = diagonals[(i + Math.abs(h % 2)) % 2].diagonalW(type, orientation, w, h);
+			return retval;
 		}
 	}
 
+	/**
+	 * Returned by nextW if no space is available.
+	 */
+	public static final int NO_SPACE = Integer.MIN_VALUE;
+
 	private Type preferredType;
+	private LandingSolver landingSolver;
+	private RayTable rayTable;
 	private Diagonal diagonalLeft;
 	private Diagonal diagonalRight;
 	private Vertical vertical;
@@ -210,9 +309,26 @@ public class Trajectory
 	}
 
 
+	/**
+	 * The preferred trajectory.
+	 *
+	 * @return The type.
+	 */
+	public Type getPreferredType()
+	{
+		return preferredType;
+	}
+
+
 	private Specific preferredSpecific()
 	{
-		switch (preferredType)
+		return specific(preferredType);
+	}
+
+
+	private Specific specific(Type type)
+	{
+		switch (type)
 		{
 			case DiagonalLeft:
 				return diagonalLeft;
@@ -241,14 +357,145 @@ public class Trajectory
 
 
 	/**
-	 * All the remaining points on the trajectory.
+	 * Next points on the trajectory. Does not allocate memory.
+	 *
+	 * @param points The current location as packed points.
+	 * @param count The number of points.
+	 * @param nextPoints The buffer for the next location. May be the same
+	 * as points.
+	 * @param gameBoard The game board.
+	 * @return The packed translation from the current location to the next
+	 * one or NO_SPACE if no space is available, in which case nextPoints is
+	 * not modified.
+	 * @see HexPoint#pack()
+	 */
+	public int nextPoints(int[] points, int count, int[] nextPoints, GameBoard gameBoard)
+	{
+		return preferredSpecific().nextPoints(points, count, nextPoints, gameBoard);
+	}
+
+
+	/**
+	 * Next location of a tetromino on the trajectory. Does not allocate
+	 * memory.
+	 *
+	 * @param type The type of the tetromino.
+	 * @param orientation The orientation of the tetromino.
+	 * @param w The current horizontal co-ordinate.
+	 * @param h The current vertical co-ordinate.
+	 * @param gameBoard The game board.
+	 * @return The next horizontal co-ordinate or NO_SPACE if no space is
+	 * available. The vertical co-ordinate is h - 1.
+	 */
+	public int nextW(Tetromino.Type type, int orientation, int w, int h, GameBoard gameBoard)
+	{
+		return preferredSpecific().nextW(type, orientation, w, h, gameBoard);
+	}
+
+
+	/**
+	 * A possible next location of a tetromino on the given trajectory. Lets
+	 * the caller check the candidates in its own way; calling nextW is
+	 * equivalent to returning the first candidate where the tetromino fits.
+	 *
+	 * @param trajectoryType The trajectory.
+	 * @param type The type of the tetromino.
+	 * @param orientation The orientation of the tetromino.
+	 * @param w The current horizontal co-ordinate.
+	 * @param h The current vertical co-ordinate.
+	 * @param i The index of the candidate, from zero.
+	 * @return The horizontal co-ordinate of the candidate or NO_SPACE if
+	 * there are no more candidates. The vertical co-ordinate is h - 1.
+	 */
+	int candidateW(Type trajectoryType, Tetromino.Type type, int orientation, int w, int h, int i)
+	{
+		return specific(trajectoryType).candidateW(type, orientation, w, h, i);
+	}
+
+
+	/**
+	 * The location where a tetromino stops moving down on the trajectory.
+	 * Equivalent to calling nextW until no space is available but crosses
+	 * the empty rows above the occupied ones without checking each of them.
+	 *
+	 * @param type The type of the tetromino.
+	 * @param orientation The orientation of the tetromino.
+	 * @param w The current horizontal co-ordinate.
+	 * @param h The current vertical co-ordinate.
+	 * @param gameBoard The game board.
+	 * @return The final co-ordinates w and h, packed as horizontal and
+	 * vertical offsets.
+	 * @see LandingSolver
+	 */
+	public int landingLocation(Tetromino.Type type, int orientation, int w, int h, GameBoard gameBoard)
+	{
+		if (null == landingSolver || landingSolver.getWidth() != gameBoard.getWidth())
+			landingSolver = new LandingSolver(gameBoard.getWidth());
+		return landingSolver.landingLocation(gameBoard, preferredType, type, orientation, w, h);
+	}
+
+
+	/**
+	 * All the remaining points on the trajectory. The points are moved along
+	 * the rays of the empty game board for as long as they are free and one
+	 * step at a time when the tetromino has to dodge. On game boards too
+	 * large for a RayTable, every step is taken one at a time.
 	 *
 	 * @param points The current location.
 	 * @param gameBoard The game board.
 	 * @return The next points or null if no space is available.
+	 * @see RayTable
 	 */
 	public Set<HexPoint> remainingPoints(Collection<? extends HexPoint> points, GameBoard gameBoard)
 	{
-		return preferredSpecific().remainingPoints(points, gameBoard);
+		int width = gameBoard.getWidth();
+		int height = gameBoard.getHeight();
+		if (null == rayTable || rayTable.getWidth() != width || rayTable.getHeight() != height)
+			rayTable = (RayTable.isSupported(width, height) ? new RayTable(width, height) : null);
+
+		int count = points.size();
+		int[] current = new int[count];
+		int i = 0;
+		for (HexPoint point : points)
+		{
+			current[i] = point.pack();
+			i++;
+		}
+
+		HexPointSet retval = new HexPointSet();
+		Specific specific = preferredSpecific();
+		while (true)
+		{
+			int steps = 0;
+			if (null != rayTable)
+				steps = rayTable.freeSteps(preferredType, current, count, gameBoard);
+			if (0 < steps)
+			{
+				int lowestRow = Integer.MAX_VALUE;
+				for (i = 0; i < count; i++)
+					lowestRow = Math.min(lowestRow, HexPoint.packedY(current[i]));
+
+				for (i = 0; i < count; i++)
+				{
+					int[] ray = rayTable.ray(preferredType, lowestRow, current[i]);
+					for (int j = 0; j < steps; j++)
+						retval.add(ray[j]);
+					current[i] = ray[steps - 1];
+				}
+			}
+			else
+			{
+				// Dodge or take a single step.
+				if (NO_SPACE == specific.nextPoints(current, count, current, gameBoard))
+					break;
+
+				for (i = 0; i < count; i++)
+					retval.add(current[i]);
+			}
+		}
+
+		if (0 == retval.size())
+			return null;
+		return retval;
 	}
 }
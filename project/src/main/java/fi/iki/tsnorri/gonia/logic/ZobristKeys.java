@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+/**
+ * Keys for Zobrist hashing. A state is hashed by XOR-ing the keys of its
+ * occupied points, so that occupying or vacating a point only requires
+ * XOR-ing its key.
+ *
+ * The keys are derived from the co-ordinates with the SplitMix64 finalizer
+ * instead of being drawn from a table. Hence they do not depend on the game
+ * board size and stay the same between program runs.
+ *
+ * @author tsnorri
+ */
+public final class ZobristKeys
+{
+	private static final long CELL_SEED = 0x9e3779b97f4a7c15L;
+	private static final long PIECE_SEED = 0x632be59bd9b4e019L;
+
+
+	/**
+	 * Constructor.
+	 */
+	private ZobristKeys()
+	{
+	}
+
+
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+
+	/**
+	 * The key of an occupied point on a game board.
+	 *
+	 * @param h Horizontal offset.
+	 * @param v Vertical offset.
+	 * @return The key.
+	 */
+	public static long cellKey(int h, int v)
+	{
+		return mix(CELL_SEED * (1 + ((long) v << 32 | (h & 0xffffffffL))));
+	}
+
+
+	/**
+	 * The key of a point occupied by the current tetromino.
+	 *
+	 * @param packed The packed point.
+	 * @return The key.
+	 * @see HexPoint#pack(int, int)
+	 */
+	public static long pieceKey(int packed)
+	{
+		return mix(PIECE_SEED * (1 + (packed & 0xffffffffL)));
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.app;
+
+import fi.iki.tsnorri.gonia.logic.AbstractGameBoard;
+import fi.iki.tsnorri.gonia.logic.GameController;
+import fi.iki.tsnorri.gonia.logic.SequentialTetrominoSource;
+import fi.iki.tsnorri.gonia.logic.Tetromino;
+import java.util.Random;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author tsnorri
+ */
+public class SimulatorTest
+{
+	public SimulatorTest()
+	{
+	}
+
+
+	@BeforeClass
+	public static void setUpClass() throws Exception
+	{
+	}
+
+
+	@AfterClass
+	public static void tearDownClass() throws Exception
+	{
+	}
+
+
+	@Before
+	public void setUp()
+	{
+	}
+
+
+	@After
+	public void tearDown()
+	{
+	}
+
+
+	@Test
+	public void testScriptedPolicy()
+	{
+		Tetromino.Type[] seq = {Tetromino.Type.I};
+		GameController gc = new GameController(new SequentialTetrominoSource(seq), 10, 18);
+		Simulator.InputPolicy policy = Simulator.createPolicy("script:jk- ", new Random(1));
+		assertTrue(gc.step());
+		Tetromino tetromino = gc.getCurrentTetromino();
+		int w = tetromino.getW();
+		int h = tetromino.getH();
+
+		assertTrue(policy.act(gc));
+		assertEquals(w - 1, tetromino.getW());
+		assertTrue(policy.act(gc));
+		assertEquals(1, tetromino.getOrientation());
+		assertTrue(policy.act(gc));
+		assertEquals(w - 1, tetromino.getW());
+		assertEquals(h, tetromino.getH());
+		assertEquals(1, tetromino.getOrientation());
+
+		assertTrue(policy.act(gc));
+		assertNull(gc.getCurrentTetromino());
+
+		// The script is repeated.
+		assertTrue(gc.step());
+		tetromino = gc.getCurrentTetromino();
+		w = tetromino.getW();
+		assertTrue(policy.act(gc));
+		assertEquals(w - 1, tetromino.getW());
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyScript()
+	{
+		Simulator.createPolicy("script:", new Random(1));
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownPolicy()
+	{
+		Simulator.createPolicy("best", new Random(1));
+	}
+
+
+	@Test
+	public void testBotPolicy()
+	{
+		// Record whether the bot rotates the tetrominoes.
+		final Simulator.InputPolicy bot = Simulator.createPolicy("bot", new Random(2));
+		final boolean[] rotated = new boolean[1];
+		Simulator.InputPolicy policy = new Simulator.InputPolicy()
+		{
+			@Override
+			public boolean act(GameController gameController)
+			{
+				boolean retval = bot.act(gameController);
+				Tetromino tetromino = gameController.getCurrentTetromino();
+				if (null != tetromino && 0 != tetromino.getOrientation())
+					rotated[0] = true;
+				return retval;
+			}
+		};
+
+		Simulator.Statistics botStatistics = Simulator.run(policy, new Random(3), 10, 18, 2, 3000);
+		Simulator.Statistics randomStatistics = Simulator.run(Simulator.createPolicy("random", new Random(2)), new Random(3), 10, 18, 2, 3000);
+		assertTrue(rotated[0]);
+		assertTrue(0 < botStatistics.getLines());
+		assertTrue(randomStatistics.getLines() < botStatistics.getLines());
+	}
+
+
+	@Test
+	public void testSeededRun()
+	{
+		// The same seed gives the same games.
+		Simulator.Statistics first = Simulator.run(Simulator.createPolicy("random", new Random(4)), new Random(4), 8, 12, 5, 1000);
+		Simulator.Statistics second = Simulator.run(Simulator.createPolicy("random", new Random(4)), new Random(4), 8, 12, 5, 1000);
+		assertTrue(0 < first.getSteps());
+		assertEquals(first.getSteps(), second.getSteps());
+		assertEquals(first.getLines(), second.getLines());
+		assertEquals(first.getScore(), second.getScore());
+	}
+
+
+	@Test
+	public void testBotSizeLimit()
+	{
+		assertTrue(Simulator.BotPolicy.isSupported(10, 18));
+		assertTrue(Simulator.BotPolicy.isSupported(AbstractGameBoard.MAX_WIDTH, 18));
+		assertFalse(Simulator.BotPolicy.isSupported(1000, 1000));
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+
+/**
+ * Runs the game board tests against BitboardGameBoard.
+ *
+ * @author tsnorri
+ */
+public class BitboardGameBoardTest extends GameBoardTest
+{
+	@Override
+	protected GameBoard newGameBoard(int width, int height)
+	{
+		return new BitboardGameBoard(width, height);
+	}
+
+
+	private void compareBoards(GameBoard expected, GameBoard actual)
+	{
+		for (int y = 0; y < expected.getHeight(); y++)
+		{
+			for (int x = 0; x < expected.getWidth(); x++)
+			{
+				HexPoint point = HexPoint.createWithOffsets(x, y);
+				assertEquals(
+					String.format("Coordinates (%d,%d) didn't match.", x, y),
+					expected.colorForOccupiedPoint(point),
+					actual.colorForOccupiedPoint(point));
+			}
+			assertEquals(expected.getOccupiedCount(y), actual.getOccupiedCount(y));
+		}
+	}
+
+
+	protected void fillRandomly(Random random, int width, int height)
+	{
+		GameBoard expected = new ConcreteGameBoard(width, height);
+		GameBoard actual = newGameBoard(width, height);
+		final List<GameBoardChange> changes = new ArrayList<GameBoardChange>();
+		GameBoardListener listener = new GameBoardListener()
+		{
+			@Override
+			public void gameBoardChanged(GameBoardChange change)
+			{
+				changes.add(change);
+			}
+		};
+		expected.addListener(listener);
+		actual.addListener(listener);
+		Color[] colors = {Color.yellow, Color.blue, Color.red};
+		int lines = 0;
+
+		for (int i = 0; i < 400; i++)
+		{
+			// Pick a few points near each other, mostly filling whole lines.
+			int count = 1 + random.nextInt(2 * width);
+			int v = random.nextInt(height);
+			HexPoint[] points = new HexPoint[count];
+			int n = 0;
+			for (int j = 0; j < count; j++)
+			{
+				HexPoint point = HexPoint.createWithOffsets(random.nextInt(width), v + random.nextInt(2));
+				if (expected.isValidAndVacant(point) && !Arrays.asList(points).contains(point))
+				{
+					points[n] = point;
+					n++;
+				}
+			}
+			HexPoint[] given = Arrays.copyOf(points, n);
+			Color color = colors[random.nextInt(colors.length)];
+			int expectedLines = expected.occupySpace(given.clone(), color);
+			assertEquals(expectedLines, actual.occupySpace(given.clone(), color));
+			compareBoards(expected, actual);
+			lines += expectedLines;
+
+			assertEquals(2, changes.size());
+			GameBoardChange expectedChange = changes.get(0);
+			GameBoardChange actualChange = changes.get(1);
+			assertArrayEquals(expectedChange.getRemovedLines(), actualChange.getRemovedLines());
+			assertArrayEquals(expectedChange.getWrappedPoints(), actualChange.getWrappedPoints());
+			assertEquals(expectedChange.getShiftEnd(), actualChange.getShiftEnd());
+			assertEquals(expectedChange.getDirtyStart(), actualChange.getDirtyStart());
+			assertEquals(expectedChange.getDirtyEnd(), actualChange.getDirtyEnd());
+			changes.clear();
+		}
+		assertTrue(0 < lines);
+	}
+
+
+	@Test
+	public void testMatchesConcreteGameBoard()
+	{
+		Random random = new Random(1);
+		fillRandomly(random, 4, 9);
+		fillRandomly(random, 7, 12);
+	}
+
+
+	@Test
+	public void testMatchesConcreteGameBoardWide()
+	{
+		Random random = new Random(2);
+		fillRandomly(random, 64, 6);
+		fillRandomly(random, 70, 6);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+import java.awt.Color;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+
+/**
+ * Runs the game board tests against ChunkedGameBoard.
+ *
+ * @author tsnorri
+ */
+public class ChunkedGameBoardTest extends BitboardGameBoardTest
+{
+	@Override
+	protected GameBoard newGameBoard(int width, int height)
+	{
+		return new ChunkedGameBoard(width, height);
+	}
+
+
+	@Test
+	public void testMatchesConcreteGameBoardTall()
+	{
+		// Spans several chunks.
+		Random random = new Random(3);
+		fillRandomly(random, 5, 3 * ChunkedGameBoard.CHUNK_ROWS + 7);
+	}
+
+
+	@Test
+	public void testTallBoard()
+	{
+		int width = 1000;
+		int height = 100000;
+		GameBoard gb = newGameBoard(width, height);
+
+		// A full line under a chunk boundary and one point above it.
+		int v = 2 * ChunkedGameBoard.CHUNK_ROWS - 1;
+		HexPoint[] line = new HexPoint[width];
+		for (int h = 0; h < width; h++)
+			line[h] = HexPoint.createWithOffsets(h, v);
+		assertEquals(0, gb.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(3, 1 + v)}, Color.red));
+		assertEquals(1 + v + 1, gb.getMaxColumnHeight());
+
+		GameBoard snapshot = gb.snapshot();
+		assertEquals(1, gb.occupySpace(line, Color.blue));
+
+		// The point is the lowest one moved, so it keeps its horizontal offset.
+		assertEquals(1, gb.getOccupiedCount(v));
+		assertEquals(0, gb.getOccupiedCount(1 + v));
+		assertTrue(gb.isOccupied(HexPoint.createWithOffsets(3, v)));
+		assertEquals(1 + v, gb.getColumnHeight(3));
+		assertEquals(1 + v, gb.getMaxColumnHeight());
+
+		// The snapshot still has the point at its original location.
+		assertTrue(snapshot.isOccupied(HexPoint.createWithOffsets(3, 1 + v)));
+		assertEquals(0, snapshot.getOccupiedCount(v));
+
+		// The state hash matches a board built directly.
+		GameBoard rebuilt = newGameBoard(width, height);
+		rebuilt.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(3, v)}, Color.red);
+		assertEquals(rebuilt.stateHash(), gb.stateHash());
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+
+/**
+ * Runs the game board tests against ConcurrentGameBoard.
+ *
+ * @author tsnorri
+ */
+public class ConcurrentGameBoardTest extends GameBoardTest
+{
+	@Override
+	protected GameBoard newGameBoard(int width, int height)
+	{
+		return new ConcurrentGameBoard(new BitboardGameBoard(width, height));
+	}
+
+
+	@Test
+	public void testConcurrentReads() throws InterruptedException
+	{
+		final int width = 6;
+		final int height = 10;
+		final GameBoard gb = newGameBoard(width, height);
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicReference<String> failure = new AtomicReference<String>();
+
+		Thread[] readers = new Thread[3];
+		for (int i = 0; i < readers.length; i++)
+		{
+			readers[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					while (!done.get() && null == failure.get())
+					{
+						// Full lines are removed before the state is published,
+						// and the counts always match the points.
+						GameBoard snapshot = gb.snapshot();
+						for (int v = 0; v < height; v++)
+						{
+							int count = 0;
+							for (int h = 0; h < width; h++)
+							{
+								if (snapshot.isOccupied(HexPoint.createWithOffsets(h, v)))
+									count++;
+							}
+							if (width == count || count != snapshot.getOccupiedCount(v))
+								failure.set(String.format("Row %d had %d points: %s", v, count, snapshot));
+						}
+					}
+				}
+			};
+			readers[i].start();
+		}
+
+		Random random = new Random(7);
+		int lines = 0;
+		for (int i = 0; i < 2000; i++)
+		{
+			int v = random.nextInt(3);
+			int h = random.nextInt(width);
+			HexPoint point = HexPoint.createWithOffsets(h, v);
+			if (gb.isValidAndVacant(point))
+				lines += gb.occupySpace(new HexPoint[] {point}, (byte) 1);
+		}
+		done.set(true);
+
+		for (Thread reader : readers)
+			reader.join();
+		assertNull(failure.get());
+		assertTrue(0 < lines);
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+
+/**
+ *
+ * @author tsnorri
+ */
+public class GameBoardCodecTest
+{
+	public GameBoardCodecTest()
+	{
+	}
+
+
+	@BeforeClass
+	public static void setUpClass() throws Exception
+	{
+	}
+
+
+	@AfterClass
+	public static void tearDownClass() throws Exception
+	{
+	}
+
+
+	@Before
+	public void setUp()
+	{
+	}
+
+
+	@After
+	public void tearDown()
+	{
+	}
+
+
+	private byte[] encode(GameBoard gb) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GameBoardCodec.encode(gb, new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+
+
+	private GameBoard decode(byte[] bytes) throws IOException
+	{
+		return GameBoardCodec.decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+
+	private void compareBoards(GameBoard expected, GameBoard actual)
+	{
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for (int v = 0; v < expected.getHeight(); v++)
+		{
+			for (int h = 0; h < expected.getWidth(); h++)
+			{
+				HexPoint point = HexPoint.createWithOffsets(h, v);
+				assertEquals(expected.colorForOccupiedPoint(point), actual.colorForOccupiedPoint(point));
+			}
+			assertEquals(expected.getOccupiedCount(v), actual.getOccupiedCount(v));
+		}
+		for (int h = 0; h < expected.getWidth(); h++)
+			assertEquals(expected.getColumnHeight(h), actual.getColumnHeight(h));
+		assertEquals(expected.stateHash(), actual.stateHash());
+	}
+
+
+	private void checkRoundTrip(Random random, GameBoard gb) throws IOException
+	{
+		Color[] colors = {Color.yellow, new Color(0x123456), TilePalette.colorForType(Tetromino.Type.S)};
+		for (int i = 0; i < 100; i++)
+		{
+			HexPoint point = HexPoint.createWithOffsets(random.nextInt(gb.getWidth()), random.nextInt(gb.getHeight()));
+			if (gb.isValidAndVacant(point))
+				gb.occupySpace(new HexPoint[] {point}, colors[random.nextInt(colors.length)]);
+			if (0 == i % 10)
+				compareBoards(gb, decode(encode(gb)));
+		}
+	}
+
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		Random random = new Random(1);
+		checkRoundTrip(random, new ConcreteGameBoard(1, 1));
+		checkRoundTrip(random, new ConcreteGameBoard(7, 12));
+		checkRoundTrip(random, new BitboardGameBoard(8, 20));
+		checkRoundTrip(random, new ChunkedGameBoard(130, 70));
+	}
+
+
+	@Test
+	public void testEmptyRows() throws IOException
+	{
+		GameBoard gb = new ConcreteGameBoard(16, 1000);
+		byte[] bytes = encode(gb);
+		// Version, width, height, palette size and one run.
+		assertEquals(1 + 1 + 2 + 1 + 2, bytes.length);
+		compareBoards(gb, decode(bytes));
+
+		gb.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(3, 500)}, TilePalette.indexForType(Tetromino.Type.I));
+		bytes = encode(gb);
+		// One palette entry and one row with a single tile.
+		assertEquals(1 + 1 + 2 + 1 + 5 + 2 + 2 + 1 + 2, bytes.length);
+		compareBoards(gb, decode(bytes));
+	}
+
+
+	private void checkInvalid(byte[] bytes)
+	{
+		Exception exc = null;
+		try
+		{
+			decode(bytes);
+		}
+		catch (IOException e)
+		{
+			exc = e;
+		}
+		assertNotNull(exc);
+	}
+
+
+	@Test
+	public void testInvalidInput() throws IOException
+	{
+		GameBoard gb = new ConcreteGameBoard(4, 5);
+		gb.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(1, 2)}, Color.red);
+		byte[] bytes = encode(gb);
+
+		// Format version.
+		byte[] modified = bytes.clone();
+		modified[0] = 2;
+		checkInvalid(modified);
+
+		// Size.
+		modified = bytes.clone();
+		modified[1] = 0;
+		checkInvalid(modified);
+
+		// Truncated.
+		checkInvalid(Arrays.copyOf(bytes, bytes.length - 1));
+
+		// Too many rows at the top.
+		modified = bytes.clone();
+		modified[modified.length - 1] = 3;
+		checkInvalid(modified);
+	}
+
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException
+	{
+		while (0 != (value & ~0x7f))
+		{
+			out.writeByte(0x80 | (value & 0x7f));
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+
+	@Test
+	public void testInvalidSize() throws IOException
+	{
+		// Too wide, too tall and negative after reading five bytes.
+		int[][] sizes = {
+			{AbstractGameBoard.MAX_WIDTH + 1, 1},
+			{1, AbstractGameBoard.MAX_HEIGHT + 1},
+			{Integer.MAX_VALUE, Integer.MAX_VALUE},
+			{-1, 1}
+		};
+		for (int[] size : sizes)
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(GameBoardCodec.FORMAT_VERSION);
+			for (int value : size)
+				writeVarInt(out, value);
+			checkInvalid(bytes.toByteArray());
+		}
+	}
+
+
+	@Test
+	public void testWideGameBoard() throws IOException
+	{
+		int width = AbstractGameBoard.MAX_WIDTH;
+		GameBoard gb = new ChunkedGameBoard(width, 20);
+		HexPoint[] points = {
+			HexPoint.createWithOffsets(0, 0),
+			HexPoint.createWithOffsets(width - 1, 0),
+			HexPoint.createWithOffsets(width / 2, 7),
+			HexPoint.createWithOffsets(width - 1, 19)
+		};
+		gb.occupySpace(points, Color.red);
+		compareBoards(gb, decode(encode(gb)));
+	}
+
+
+	@Test
+	public void testFactory() throws IOException
+	{
+		Random random = new Random(2);
+		GameBoard gb = new ConcurrentGameBoard(new ConcreteGameBoard(9, 30));
+		for (int i = 0; i < 50; i++)
+		{
+			HexPoint point = HexPoint.createWithOffsets(random.nextInt(9), random.nextInt(30));
+			if (gb.isValidAndVacant(point))
+				gb.occupySpace(new HexPoint[] {point}, Color.blue);
+		}
+
+		GameBoard decoded = GameBoardCodec.decode(new DataInputStream(new ByteArrayInputStream(encode(gb))), new GameBoardCodec.GameBoardFactory()
+		{
+			@Override
+			public AbstractGameBoard instantiate(int width, int height)
+			{
+				return new BitboardGameBoard(width, height);
+			}
+		});
+		assertTrue(decoded instanceof BitboardGameBoard);
+		compareBoards(gb, decoded);
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFactoryWithWrongSize() throws IOException
+	{
+		GameBoardCodec.decode(new DataInputStream(new ByteArrayInputStream(encode(new ConcreteGameBoard(4, 5)))), new GameBoardCodec.GameBoardFactory()
+		{
+			@Override
+			public AbstractGameBoard instantiate(int width, int height)
+			{
+				return new ConcreteGameBoard(width, 1 + height);
+			}
+		});
+	}
+
+
+	@Test
+	public void testPaletteLimit() throws IOException
+	{
+		// More entries than there are indices.
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(GameBoardCodec.FORMAT_VERSION);
+		writeVarInt(out, 4);
+		writeVarInt(out, 2);
+		writeVarInt(out, 256);
+		checkInvalid(bytes.toByteArray());
+
+		// New colours that would take the reserved indices.
+		bytes = new ByteArrayOutputStream();
+		out = new DataOutputStream(bytes);
+		out.writeByte(GameBoardCodec.FORMAT_VERSION);
+		writeVarInt(out, 4);
+		writeVarInt(out, 2);
+		writeVarInt(out, 255);
+		for (int i = 1; i < 256; i++)
+		{
+			out.writeByte(i);
+			out.writeInt(0x7f0000 | i);
+		}
+		writeVarInt(out, 2);
+		checkInvalid(bytes.toByteArray());
+
+		// None of them were registered, since registering them would have filled
+		// the palette.
+		GameBoard gb = new ConcreteGameBoard(4, 2);
+		gb.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(1, 0)}, new Color(0x7e0001));
+		compareBoards(gb, decode(encode(gb)));
+	}
+}
@@ -11,8 +11,11 @@ package fi.iki.tsnorri.gonia.logic;
 
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Random;
 import static org.junit.Assert.*;
 import org.junit.*;
 
@@ -89,6 +92,19 @@ public class GameBoardTest
 	{
 	}
 
+
+	/**
+	 * Create the game board under test.
+	 *
+	 * @param width Game board width.
+	 * @param height Game board height.
+	 * @return The game board.
+	 */
+	protected GameBoard newGameBoard(int width, int height)
+	{
+		return new ConcreteGameBoard(width, height);
+	}
+
 	
 	private boolean[][] convertToBooleanMatrix(int[][] input)
 	{
@@ -129,7 +145,7 @@ public class GameBoardTest
 	@Test
 	public void testCreation()
 	{
-		GameBoard gb = new ConcreteGameBoard(5, 4);
+		GameBoard gb = newGameBoard(5, 4);
 		gb.toString();
 	}
 
@@ -140,7 +156,7 @@ public class GameBoardTest
 		Exception exc = null;
 		try
 		{
-			GameBoard gb = new ConcreteGameBoard(0, 4);
+			GameBoard gb = newGameBoard(0, 4);
 		}
 		catch (IllegalArgumentException e)
 		{
@@ -159,7 +175,7 @@ public class GameBoardTest
 		Exception exc = null;
 		try
 		{
-			GameBoard gb = new ConcreteGameBoard(5, 0);
+			GameBoard gb = newGameBoard(5, 0);
 		}
 		catch (IllegalArgumentException e)
 		{
@@ -172,11 +188,49 @@ public class GameBoardTest
 	}
 
 
+	@Test
+	public void testCreationTooWide()
+	{
+		// Wider game boards could not be addressed with packed points.
+		Exception exc = null;
+		try
+		{
+			GameBoard gb = newGameBoard(5000, 10);
+		}
+		catch (IllegalArgumentException e)
+		{
+			exc = e;
+		}
+
+		assertNotNull(exc);
+		assertEquals(IllegalArgumentException.class, exc.getClass());
+		assertEquals(String.format("Width must be at most %d.", AbstractGameBoard.MAX_WIDTH), exc.getMessage());
+	}
+
+
+	@Test
+	public void testWidestGameBoard()
+	{
+		int width = AbstractGameBoard.MAX_WIDTH;
+		GameBoard gb = newGameBoard(width, 4);
+		HexPoint[] points = {HexPoint.createWithOffsets(width - 1, 2), HexPoint.createWithOffsets(width - 1, 3)};
+		gb.occupySpace(points, Color.red);
+		for (HexPoint point : points)
+		{
+			assertTrue(gb.isOccupied(point));
+			assertTrue(gb.isOccupied(point.pack()));
+			assertFalse(gb.isValidAndVacant(point.pack()));
+		}
+		assertFalse(gb.isValidAndVacant(HexPoint.packOffsets(width, 2)));
+		assertTrue(gb.isValidAndVacant(HexPoint.packOffsets(width - 1, 1)));
+	}
+
+
 	@Test
 	public void testToString()
 	{
 		// Smoke test only.
-		GameBoard gb = new ConcreteGameBoard(7, 9);
+		GameBoard gb = newGameBoard(7, 9);
 		assertNotNull(gb.toString());
 	}
 
@@ -186,7 +240,7 @@ public class GameBoardTest
 		boolean[][] model = convertToBooleanMatrix(givenModel);
 		final int height = model.length;
 		final int width = model[0].length;
-		GameBoard gb = new ConcreteGameBoard(width, height);
+		GameBoard gb = newGameBoard(width, height);
 
 		HexPoint[] occupied = null;
 
@@ -228,12 +282,285 @@ public class GameBoardTest
 		boolean[][] model = convertToBooleanMatrix(givenModel);
 		for (int y = 0; y < model.length; y++)
 		{
+			int count = 0;
 			for (int x = 0; x < model[y].length; x++)
 			{
 				boolean status = gb.isOccupied(HexPoint.createWithOffsets(x, y));
 				assertEquals(String.format("Coordinates (%d,%d) didn't match.", x, y), model[y][x], status);
+				if (status)
+					count++;
+			}
+			assertEquals(String.format("Row %d count didn't match.", y), count, gb.getOccupiedCount(y));
+		}
+	}
+
+
+	private byte[][] tiles(GameBoard gb)
+	{
+		byte[][] retval = new byte[gb.getHeight()][gb.getWidth()];
+		for (int v = 0; v < gb.getHeight(); v++)
+		{
+			for (int h = 0; h < gb.getWidth(); h++)
+				retval[v][h] = gb.getTile(HexPoint.createWithOffsets(h, v));
+		}
+		return retval;
+	}
+
+
+	@Test
+	public void testSnapshot()
+	{
+		Random random = new Random(3);
+		GameBoard gb = newGameBoard(5, 8);
+		List<GameBoard> snapshots = new ArrayList<GameBoard>();
+		List<byte[][]> expected = new ArrayList<byte[][]>();
+		for (int i = 0; i < 200; i++)
+		{
+			HexPoint point = HexPoint.createWithOffsets(random.nextInt(5), random.nextInt(3));
+			if (gb.isValidAndVacant(point))
+				gb.occupySpace(new HexPoint[] {point}, (byte) (1 + random.nextInt(3)));
+
+			if (0 == i % 20)
+			{
+				snapshots.add(gb.snapshot());
+				expected.add(tiles(gb));
 			}
 		}
+
+		for (int i = 0; i < snapshots.size(); i++)
+			assertArrayEquals(expected.get(i), tiles(snapshots.get(i)));
+
+		GameBoard snapshot = snapshots.get(0);
+		assertSame(snapshot, snapshot.snapshot());
+
+		Exception exc = null;
+		try
+		{
+			snapshot.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(0, 7)}, Color.BLACK);
+		}
+		catch (UnsupportedOperationException e)
+		{
+			exc = e;
+		}
+		assertNotNull(exc);
+	}
+
+
+	@Test
+	public void testMutableCopy()
+	{
+		int[][] model = {
+			{1, 1, 0},
+			{0, 1, 0},
+			{0, 0, 0}
+		};
+		GameBoard gb = createGameBoard(model);
+		GameBoard copy = gb.mutableCopy();
+		checkOccupancy(copy, model);
+
+		assertEquals(1, copy.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(2, 0)}, Color.BLACK));
+		checkOccupancy(gb, model);
+		assertEquals(0, gb.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(0, 2)}, Color.BLACK));
+		assertEquals(1, copy.getOccupiedCount(0));
+		assertEquals(0, copy.getOccupiedCount(2));
+		assertEquals(1, gb.getOccupiedCount(2));
+	}
+
+
+	@Test
+	public void testStateHash()
+	{
+		Random random = new Random(5);
+		GameBoard gb = newGameBoard(4, 6);
+		assertEquals(0, gb.stateHash());
+		for (int i = 0; i < 300; i++)
+		{
+			HexPoint point = HexPoint.createWithOffsets(random.nextInt(4), random.nextInt(3));
+			if (gb.isValidAndVacant(point))
+				gb.occupySpace(new HexPoint[] {point}, Color.BLACK);
+
+			// Rebuild the board from the occupied points and compare.
+			GameBoard rebuilt = newGameBoard(4, 6);
+			for (int v = 0; v < 6; v++)
+			{
+				for (int h = 0; h < 4; h++)
+				{
+					HexPoint current = HexPoint.createWithOffsets(h, v);
+					if (gb.isOccupied(current))
+						rebuilt.occupySpace(new HexPoint[] {current}, Color.BLUE);
+				}
+			}
+			assertEquals(rebuilt.stateHash(), gb.stateHash());
+		}
+		assertEquals(gb.stateHash(), gb.snapshot().stateHash());
+	}
+
+
+	private void checkCanPlace(Random random, int width, int height)
+	{
+		GameBoard gb = newGameBoard(width, height);
+		for (int i = 0; i < 3 * width; i++)
+		{
+			HexPoint point = HexPoint.createWithOffsets(random.nextInt(width), random.nextInt(height));
+			if (gb.isValidAndVacant(point) && gb.getOccupiedCount(point.getY()) < width - 1)
+				gb.occupySpace(new HexPoint[] {point}, Color.BLACK);
+		}
+
+		for (Tetromino.Type type : Tetromino.Type.values())
+		{
+			for (int orientation = 0; orientation < TetrominoShape.ORIENTATIONS; orientation++)
+			{
+				for (int h = -1; h <= height; h++)
+				{
+					for (int w = -2; w <= width + 1; w++)
+					{
+						TetrominoShape shape = TetrominoShape.valueOf(type, orientation, h);
+						List<HexPoint> points = new ArrayList<HexPoint>();
+						for (int j = 0; j < shape.getPointCount(); j++)
+							points.add(HexPoint.createWithOffsets(w + shape.getHorizontalOffset(j), h + shape.getVerticalOffset(j)));
+						assertEquals(gb.areAllValidAndVacant(points), gb.canPlace(type, orientation, w, h));
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testCanPlace()
+	{
+		Random random = new Random(9);
+		checkCanPlace(random, 6, 7);
+		checkCanPlace(random, 70, 5);
+	}
+
+
+	@Test
+	public void testChanges()
+	{
+		final List<GameBoardChange> changes = new ArrayList<GameBoardChange>();
+		GameBoardListener listener = new GameBoardListener()
+		{
+			@Override
+			public void gameBoardChanged(GameBoardChange change)
+			{
+				changes.add(change);
+			}
+		};
+
+		Random random = new Random(6);
+		GameBoard gb = newGameBoard(4, 8);
+		gb.addListener(listener);
+		int lines = 0;
+		for (int i = 0; i < 300; i++)
+		{
+			HexPoint point = HexPoint.createWithOffsets(random.nextInt(4), random.nextInt(4));
+			if (!gb.isValidAndVacant(point))
+				continue;
+
+			byte[][] before = tiles(gb);
+			long version = gb.version();
+			lines += gb.occupySpace(new HexPoint[] {point}, Color.BLACK);
+			byte[][] after = tiles(gb);
+
+			assertEquals(1, changes.size());
+			GameBoardChange change = changes.remove(0);
+			assertSame(gb, change.getGameBoard());
+			assertEquals(1 + version, gb.version());
+			assertEquals(gb.version(), change.getVersion());
+			assertArrayEquals(new int[] {point.pack()}, change.getOccupiedPoints());
+
+			for (int v = 0; v < gb.getHeight(); v++)
+			{
+				if (!Arrays.equals(before[v], after[v]))
+					assertTrue(change.getDirtyStart() <= v && v < change.getDirtyEnd());
+			}
+			for (int removed : change.getRemovedLines())
+				assertEquals(point.getY(), removed);
+		}
+		assertTrue(0 < lines);
+
+		gb.removeListener(listener);
+		gb.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(0, 7)}, Color.BLACK);
+		assertTrue(changes.isEmpty());
+	}
+
+
+	private static void checkColumnHeights(GameBoard gb)
+	{
+		int max = 0;
+		for (int h = 0; h < gb.getWidth(); h++)
+		{
+			int height = 0;
+			for (int v = 0; v < gb.getHeight(); v++)
+			{
+				if (gb.isOccupied(HexPoint.createWithOffsets(h, v)))
+					height = 1 + v;
+			}
+			assertEquals(height, gb.getColumnHeight(h));
+			max = Math.max(max, height);
+		}
+		assertEquals(max, gb.getMaxColumnHeight());
+
+		for (int h = 0; h + 1 < gb.getWidth(); h++)
+			assertEquals(gb.getColumnHeight(1 + h) - gb.getColumnHeight(h), gb.getSurfaceProfile(h));
+	}
+
+
+	@Test
+	public void testColumnHeights()
+	{
+		Random random = new Random(8);
+		GameBoard gb = newGameBoard(5, 9);
+		for (int i = 0; i < 400; i++)
+		{
+			HexPoint point = HexPoint.createWithOffsets(random.nextInt(5), random.nextInt(6));
+			if (gb.isValidAndVacant(point))
+				gb.occupySpace(new HexPoint[] {point}, Color.BLACK);
+			checkColumnHeights(gb);
+		}
+		assertEquals(0, gb.getColumnHeight(-1));
+		assertEquals(0, gb.getColumnHeight(5));
+	}
+
+
+	@Test
+	public void testColumnHeightsAfterLines()
+	{
+		// Lines removed high up on a tall stack with holes under them.
+		Random random = new Random(10);
+		GameBoard gb = newGameBoard(6, 100);
+		for (int i = 0; i < 2000; i++)
+		{
+			int v = random.nextInt(90);
+			HexPoint[] points = new HexPoint[1 + random.nextInt(3)];
+			for (int j = 0; j < points.length; j++)
+				points[j] = HexPoint.createWithOffsets(random.nextInt(6), v + j);
+			gb.occupySpace(points, Color.BLACK);
+			checkColumnHeights(gb);
+		}
+	}
+
+
+	@Test
+	public void testOccupiedCount()
+	{
+		GameBoard gb = newGameBoard(3, 3);
+		HexPoint[] points = {
+			HexPoint.createWithOffsets(0, 0),
+			HexPoint.createWithOffsets(1, 0),
+			HexPoint.createWithOffsets(1, 1)
+		};
+		assertEquals(0, gb.occupySpace(points, Color.BLACK));
+		assertEquals(2, gb.getOccupiedCount(0));
+		assertEquals(1, gb.getOccupiedCount(1));
+		assertEquals(0, gb.getOccupiedCount(2));
+		assertEquals(0, gb.getOccupiedCount(-1));
+		assertEquals(0, gb.getOccupiedCount(3));
+
+		assertEquals(1, gb.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(2, 0)}, Color.BLACK));
+		assertEquals(1, gb.getOccupiedCount(0));
+		assertEquals(0, gb.getOccupiedCount(1));
 	}
 	
 	
@@ -259,7 +586,7 @@ public class GameBoardTest
 	{
 		final int width = 4;
 		final int height = 5;
-		GameBoard gb = new ConcreteGameBoard(width, height);
+		GameBoard gb = newGameBoard(width, height);
 		gb.occupySpace (new HexPoint[] {HexPoint.createWithOffsets (1, 2)}, Color.yellow);
 		gb.occupySpace (new HexPoint[] {HexPoint.createWithOffsets (3, 4)}, Color.blue);
 		
@@ -341,7 +668,7 @@ public class GameBoardTest
 	@Test
 	public void testValidityMultiple ()
 	{
-		GameBoard gb = new ConcreteGameBoard(2, 2);
+		GameBoard gb = newGameBoard(2, 2);
 		HexPoint point = HexPoint.createWithOffsets(1, 1);
 		gb.occupySpace (new HexPoint[] {point}, Color.yellow);
 	
@@ -581,6 +908,44 @@ public class GameBoardTest
 	}
 
 	
+	@Test
+	public void testOccupyOutsideGameBoard()
+	{
+		GameBoard gb = newGameBoard(3, 4);
+		HexPoint[] outside = {
+			HexPoint.createWithOffsets(-1, 1),
+			HexPoint.createWithOffsets(3, 1),
+			HexPoint.createWithOffsets(1, 4),
+			HexPoint.createWithOffsets(1, -1)
+		};
+		HexPoint[] points = {
+			HexPoint.createWithOffsets(0, 0),
+			HexPoint.createWithOffsets(1, 0),
+			HexPoint.createWithOffsets(2, 0),
+			HexPoint.createWithOffsets(1, 1),
+			outside[0].clone(),
+			outside[1].clone(),
+			outside[2].clone(),
+			outside[3].clone()
+		};
+
+		// The points outside are dropped and do not prevent the line from being removed.
+		assertEquals(1, gb.occupySpace(points, Color.BLACK));
+		for (HexPoint point : outside)
+		{
+			assertFalse(gb.isOccupied(point));
+			assertFalse(gb.isValidAndVacant(point));
+			assertEquals(TilePalette.EMPTY, gb.getTile(point));
+		}
+
+		int count = 0;
+		for (int v = 0; v < gb.getHeight(); v++)
+			count += gb.getOccupiedCount(v);
+		assertEquals(1, count);
+		assertEquals(1, gb.getMaxColumnHeight());
+	}
+
+
 	@Test
 	public void testFindLines()
 	{
@@ -9,6 +9,9 @@
  */
 package fi.iki.tsnorri.gonia.logic;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -97,4 +100,162 @@ public class GameControllerTest
 
 		assertFalse(gc.drop());
 	}
+
+
+	@Test
+	public void testTrajectoryPoints()
+	{
+		Tetromino.Type[] seq =
+		{
+			Tetromino.Type.L
+		};
+		TetrominoSource source = new SequentialTetrominoSource(seq);
+		GameController gc = new GameController(source, 8, 10);
+		assertNull(gc.trajectoryPoints());
+
+		assertTrue(gc.step());
+		Set<HexPoint> points = gc.trajectoryPoints();
+		assertNotNull(points);
+		assertSame(points, gc.trajectoryPoints());
+
+		// Points are recalculated when the tetromino moves.
+		Tetromino t = gc.getCurrentTetromino();
+		Trajectory trajectory = new Trajectory();
+		gc.moveLeft();
+		Set<HexPoint> moved = gc.trajectoryPoints();
+		assertNotSame(points, moved);
+		assertEquals(trajectory.remainingPoints(t.getPoints(), gc.getGameBoard()), moved);
+		assertSame(moved, gc.trajectoryPoints());
+
+		// And when the trajectory changes.
+		gc.setPreferredTrajectory(Trajectory.Type.DiagonalLeft);
+		trajectory.setPreferredType(Trajectory.Type.DiagonalLeft);
+		Set<HexPoint> diagonal = gc.trajectoryPoints();
+		assertNotSame(moved, diagonal);
+		assertEquals(trajectory.remainingPoints(t.getPoints(), gc.getGameBoard()), diagonal);
+
+		// And when the tetromino lands.
+		assertTrue(gc.drop());
+		assertNull(gc.trajectoryPoints());
+		assertTrue(gc.step());
+		assertEquals(trajectory.remainingPoints(gc.getCurrentTetromino().getPoints(), gc.getGameBoard()), gc.trajectoryPoints());
+	}
+
+
+	private void checkLandingPoints(GameController gc, Map<Trajectory.Type, Set<HexPoint>> landingPoints)
+	{
+		Tetromino t = gc.getCurrentTetromino();
+		Trajectory trajectory = new Trajectory();
+		assertEquals(Trajectory.Type.values().length, landingPoints.size());
+		for (Trajectory.Type trajectoryType : Trajectory.Type.values())
+		{
+			// Move the tetromino one step at a time.
+			trajectory.setPreferredType(trajectoryType);
+			int w = t.getW();
+			int h = t.getH();
+			int nextW;
+			while (Trajectory.NO_SPACE != (nextW = trajectory.nextW(t.getType(), t.getOrientation(), w, h, gc.getGameBoard())))
+			{
+				w = nextW;
+				h--;
+			}
+
+			Set<HexPoint> points = landingPoints.get(trajectoryType);
+			TetrominoShape shape = TetrominoShape.valueOf(t.getType(), t.getOrientation(), h);
+			assertEquals(shape.getPointCount(), points.size());
+			for (int i = 0; i < shape.getPointCount(); i++)
+				assertTrue(points.contains(HexPoint.createWithOffsets(w + shape.getHorizontalOffset(i), h + shape.getVerticalOffset(i))));
+		}
+	}
+
+
+	@Test
+	public void testLandingPoints()
+	{
+		Tetromino.Type[] seq =
+		{
+			Tetromino.Type.S, Tetromino.Type.C, Tetromino.Type.L
+		};
+		TetrominoSource source = new SequentialTetrominoSource(seq);
+		GameController gc = new GameController(source, 8, 12);
+		assertNull(gc.landingPoints());
+
+		for (int i = 0; i < 3; i++)
+		{
+			assertTrue(gc.step());
+			Map<Trajectory.Type, Set<HexPoint>> points = gc.landingPoints();
+			checkLandingPoints(gc, points);
+			assertSame(points, gc.landingPoints());
+
+			// Points are recalculated when the tetromino moves.
+			gc.moveRight();
+			gc.rotateCW();
+			Map<Trajectory.Type, Set<HexPoint>> moved = gc.landingPoints();
+			assertNotSame(points, moved);
+			checkLandingPoints(gc, moved);
+
+			gc.setPreferredTrajectory(Trajectory.Type.values()[i]);
+			assertTrue(gc.drop());
+			assertNull(gc.landingPoints());
+		}
+	}
+
+
+	@Test
+	public void testSpawnPoints()
+	{
+		// The origin of the base points is placed on the fourth row from the top.
+		Tetromino.Type[] seq =
+		{
+			Tetromino.Type.C, Tetromino.Type.Y, Tetromino.Type.I
+		};
+		int[][][] expectedOffsets =
+		{
+			{{3, 7}, {3, 8}, {3, 9}, {4, 7}},
+			{{3, 8}, {4, 7}, {4, 8}, {4, 9}},
+			{{2, 8}, {3, 8}, {4, 8}, {5, 8}}
+		};
+		TetrominoSource source = new SequentialTetrominoSource(seq);
+		GameController gc = new GameController(source, 8, 8);
+		for (int[][] offsets : expectedOffsets)
+		{
+			assertTrue(gc.step());
+			Set<HexPoint> points = new TreeSet<HexPoint>(new HexPoint.Comparator());
+			points.addAll(gc.getCurrentTetromino().getPoints());
+			assertEquals(offsets.length, points.size());
+			for (int[] offset : offsets)
+				assertTrue(points.contains(HexPoint.createWithOffsets(offset[0], offset[1])));
+			assertTrue(gc.drop());
+		}
+	}
+
+
+	@Test
+	public void testSpawnRotation()
+	{
+		// The tetromino turns in place without moving up.
+		Tetromino.Type[] seq =
+		{
+			Tetromino.Type.C, Tetromino.Type.Y
+		};
+		int[][][] expectedOffsets =
+		{
+			{{4, 17}, {4, 18}, {4, 19}, {5, 19}},
+			{{4, 17}, {5, 18}, {6, 18}, {4, 19}}
+		};
+		TetrominoSource source = new SequentialTetrominoSource(seq);
+		GameController gc = new GameController(source, 10, 18);
+		for (int[][] offsets : expectedOffsets)
+		{
+			assertTrue(gc.step());
+			gc.rotateCW();
+			Set<HexPoint> points = new TreeSet<HexPoint>(new HexPoint.Comparator());
+			points.addAll(gc.getCurrentTetromino().getPoints());
+			assertEquals(1, gc.getCurrentTetromino().getOrientation());
+			assertEquals(offsets.length, points.size());
+			for (int[] offset : offsets)
+				assertTrue(points.contains(HexPoint.createWithOffsets(offset[0], offset[1])));
+			assertTrue(gc.drop());
+		}
+	}
 }
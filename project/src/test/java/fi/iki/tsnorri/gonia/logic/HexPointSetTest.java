@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author tsnorri
+ */
+public class HexPointSetTest
+{
+	public HexPointSetTest()
+	{
+	}
+
+
+	@BeforeClass
+	public static void setUpClass() throws Exception
+	{
+	}
+
+
+	@AfterClass
+	public static void tearDownClass() throws Exception
+	{
+	}
+
+
+	@Before
+	public void setUp()
+	{
+	}
+
+
+	@After
+	public void tearDown()
+	{
+	}
+
+
+	@Test
+	public void testAddAndRemove()
+	{
+		HexPointSet set = new HexPointSet();
+		Set<Integer> expected = new HashSet<Integer>();
+		Random random = new Random(11);
+		for (int i = 0; i < 5000; i++)
+		{
+			int key = HexPoint.packOffsets(random.nextInt(20), random.nextInt(30));
+			if (random.nextBoolean())
+				assertEquals(expected.add(key), set.add(key));
+			else
+				assertEquals(expected.remove(key), set.remove(key));
+
+			assertEquals(expected.size(), set.size());
+		}
+
+		for (int key : expected)
+			assertTrue(set.contains(key));
+	}
+
+
+	@Test
+	public void testIteration()
+	{
+		HexPointSet set = new HexPointSet();
+		SortedSet<HexPoint> expected = new TreeSet<HexPoint>(new HexPoint.Comparator());
+		for (int i = 0; i < 10; i++)
+		{
+			HexPoint point = new HexPoint(i, 5 - 2 * i, i - 5);
+			assertTrue(set.add(point));
+			expected.add(point);
+		}
+
+		assertFalse(set.add(new HexPoint(0, 5, -5)));
+		assertTrue(set.contains(new HexPoint(1, 3, -4)));
+		assertFalse(set.contains(new HexPoint(1, 4, -5)));
+		assertEquals(new ArrayList<HexPoint>(expected), new ArrayList<HexPoint>(set));
+		assertEquals(new HashSet<HexPoint>(expected), set);
+	}
+}
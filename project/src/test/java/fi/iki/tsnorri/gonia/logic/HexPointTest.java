@@ -276,7 +276,7 @@ public class HexPointTest
 	public void testTransformedCopy3()
 	{
 		HexPoint c1 = HexPoint.createWithOffsets(0, 0);
-		int[][] matrix = HexPoint.translationTransformation(2, 0, true);
+		HexTransform matrix = HexPoint.translationTransformation(2, 0, true);
 		HexPoint c2 = c1.transformedCopy(matrix);
 		assertEquals(0, c1.getHorizontalOffset());
 		assertEquals(0, c1.getY());
@@ -289,7 +289,7 @@ public class HexPointTest
 	public void testTransformedCopy4()
 	{
 		HexPoint c1 = HexPoint.createWithOffsets (3, 1);
-		int[][] matrix = HexPoint.translationTransformation(1, 0, false);
+		HexTransform matrix = HexPoint.translationTransformation(1, 0, false);
 		HexPoint c2 = c1.transformedCopy(matrix);
 		assertEquals(3, c1.getHorizontalOffset());
 		assertEquals(1, c1.getY());
@@ -388,4 +388,103 @@ public class HexPointTest
 		p2.assignOffsets(h, v);
 		assertEquals(p2, p1);
 	}
+
+
+	@Test
+	public void testPacked()
+	{
+		for (int y = -5; y <= 5; y++)
+		{
+			for (int x = -5; x <= 5; x++)
+			{
+				HexPoint point = new HexPoint(x, y, -(x + y));
+				int packed = point.pack();
+				assertEquals(x, HexPoint.packedX(packed));
+				assertEquals(y, HexPoint.packedY(packed));
+				assertEquals(-(x + y), HexPoint.packedZ(packed));
+				assertEquals(point.getHorizontalOffset(), HexPoint.packedHorizontalOffset(packed));
+				assertEquals(point, HexPoint.unpack(packed));
+			}
+		}
+		assertEquals(HexPoint.createWithOffsets(3, 7).pack(), HexPoint.packOffsets(3, 7));
+	}
+
+
+	@Test
+	public void testPackedTranslation()
+	{
+		HexPoint c1 = HexPoint.createWithOffsets(3, 1);
+		HexTransform transformation = HexPoint.translationTransformation(-2, -3, true);
+		int translation = HexPoint.packedOrthogonalTranslation(-2, -3, true);
+		assertEquals(c1.transformedCopy(transformation).pack(), c1.pack() + translation);
+	}
+
+
+	@Test
+	public void testPackedSort()
+	{
+		HexPoint p1 = HexPoint.createWithOffsets(0, 0);
+		HexPoint p2 = HexPoint.createWithOffsets(0, 1);
+		HexPoint p3 = HexPoint.createWithOffsets(3, 1);
+		HexPoint p4 = HexPoint.createWithOffsets(2, 3);
+		HexPoint p5 = HexPoint.createWithOffsets(-1, -2);
+		HexPoint[] points = {p5, p1, p2, p3, p4};
+		HexPoint.Comparator comparator = new HexPoint.Comparator();
+
+		for (HexPoint lhs : points)
+		{
+			for (HexPoint rhs : points)
+			{
+				assertEquals(
+					Integer.signum(comparator.compare(lhs, rhs)),
+					HexPoint.comparePacked(lhs.pack(), rhs.pack()));
+			}
+		}
+	}
+
+
+	@Test
+	public void testValueOf()
+	{
+		HexPoint.ensureCanonicalRange(10, 20);
+		HexPoint p1 = HexPoint.valueOfOffsets(3, 7);
+		HexPoint p2 = HexPoint.valueOf(p1.getX(), p1.getY(), p1.getZ());
+		assertSame(p1, p2);
+		assertSame(p1, HexPoint.createWithOffsets(3, 7));
+		assertSame(p1, new MutableHexPoint(p1.getX(), p1.getY(), p1.getZ()).clone());
+		assertEquals(3, p1.getHorizontalOffset());
+		assertEquals(7, p1.getY());
+
+		HexPoint p3 = HexPoint.valueOfOffsets(-100, 1000);
+		assertEquals(new HexPoint(-600, 1000, -400), p3);
+		assertNotSame(p3, HexPoint.valueOfOffsets(-100, 1000));
+	}
+
+
+	@Test
+	public void testHashCode()
+	{
+		// The hash follows the co-ordinates of mutable points.
+		MutableHexPoint p1 = MutableHexPoint.createWithOffsets(2, 3);
+		assertEquals(HexPoint.hashPacked(p1.pack()), p1.hashCode());
+		p1.assignOffsets(5, 8);
+		assertEquals(HexPoint.valueOfOffsets(5, 8).hashCode(), p1.hashCode());
+		p1.transform(HexPoint.translationTransformation(1, -1, true));
+		assertEquals(HexPoint.hashPacked(p1.pack()), p1.hashCode());
+		p1.copyFrom(HexPoint.valueOfOffsets(0, 1));
+		assertEquals(HexPoint.valueOfOffsets(0, 1).hashCode(), p1.hashCode());
+	}
+
+
+	@Test
+	public void testGameBoardDoesNotResizeCanonicalRange()
+	{
+		// Creating game boards and snapshots does not replace the table.
+		HexPoint.ensureCanonicalRange(10, 20);
+		HexPoint p1 = HexPoint.valueOfOffsets(3, 7);
+		GameBoard gb = new ConcreteGameBoard(100, 200);
+		gb.snapshot();
+		assertSame(p1, HexPoint.valueOfOffsets(3, 7));
+		assertNotSame(HexPoint.valueOfOffsets(90, 150), HexPoint.valueOfOffsets(90, 150));
+	}
 }
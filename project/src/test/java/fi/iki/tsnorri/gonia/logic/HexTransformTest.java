@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author tsnorri
+ */
+public class HexTransformTest
+{
+	public HexTransformTest()
+	{
+	}
+
+
+	@BeforeClass
+	public static void setUpClass() throws Exception
+	{
+	}
+
+
+	@AfterClass
+	public static void tearDownClass() throws Exception
+	{
+	}
+
+
+	@Before
+	public void setUp()
+	{
+	}
+
+
+	@After
+	public void tearDown()
+	{
+	}
+
+
+	@Test
+	public void testRotationCW()
+	{
+		int[][] matrix = {
+			{ 0, -1,  0,  0},
+			{ 0,  0, -1,  0},
+			{-1,  0,  0,  0},
+			{ 0,  0,  0,  1}
+		};
+		assertArrayEquals(matrix, HexTransform.rotation(1).toMatrix());
+		assertEquals(HexTransform.rotation(1), HexTransform.fromMatrix(matrix));
+	}
+
+
+	@Test
+	public void testRotationCCW()
+	{
+		int[][] matrix = {
+			{ 0,  0, -1,  0},
+			{-1,  0,  0,  0},
+			{ 0, -1,  0,  0},
+			{ 0,  0,  0,  1}
+		};
+		assertArrayEquals(matrix, HexTransform.rotation(-1).toMatrix());
+		assertEquals(5, HexTransform.fromMatrix(matrix).getRotation());
+	}
+
+
+	@Test
+	public void testFullTurn()
+	{
+		HexTransform transform = HexTransform.IDENTITY;
+		for (int i = 0; i < 6; i++)
+			transform = transform.andThen(HexTransform.rotation(1));
+		assertEquals(HexTransform.IDENTITY, transform);
+	}
+
+
+	@Test
+	public void testMirror()
+	{
+		HexTransform mirror = HexTransform.create(0, true, 0, 0, 0);
+		HexPoint point = new HexPoint(1, 2, -3);
+		assertEquals(new HexPoint(-3, 2, 1), point.transformedCopy(mirror));
+		assertEquals(HexTransform.IDENTITY, mirror.andThen(mirror));
+	}
+
+
+	@Test
+	public void testComposition()
+	{
+		HexTransform[] transforms = {
+			HexTransform.rotation(2),
+			HexTransform.create(1, true, 1, -2, 1),
+			HexTransform.translation(3, 0, -3),
+			HexTransform.create(4, false, -1, -1, 2)
+		};
+		HexPoint point = new HexPoint(2, -5, 3);
+
+		for (HexTransform t1 : transforms)
+		{
+			for (HexTransform t2 : transforms)
+			{
+				HexPoint expected = point.transformedCopy(t1).transformedCopy(t2);
+				assertEquals(expected, point.transformedCopy(t1.andThen(t2)));
+				assertEquals(expected.pack(), t1.andThen(t2).applyPacked(point.pack()));
+				assertEquals(t1.andThen(t2), HexTransform.fromMatrix(t1.andThen(t2).toMatrix()));
+			}
+		}
+	}
+
+
+	@Test
+	public void testInvalidTranslation()
+	{
+		Exception exc = null;
+		try
+		{
+			HexTransform.translation(1, 1, 1);
+		}
+		catch (IllegalArgumentException e)
+		{
+			exc = e;
+		}
+
+		assertNotNull(exc);
+		assertEquals("The sum of translations must be zero.", exc.getMessage());
+	}
+
+
+	@Test
+	public void testInvalidMatrix()
+	{
+		int[][] matrix = {
+			{2, 0, 0, 0},
+			{0, 1, 0, 0},
+			{0, 0, 1, 0},
+			{0, 0, 0, 1}
+		};
+		Exception exc = null;
+		try
+		{
+			HexTransform.fromMatrix(matrix);
+		}
+		catch (IllegalArgumentException e)
+		{
+			exc = e;
+		}
+
+		assertNotNull(exc);
+	}
+}
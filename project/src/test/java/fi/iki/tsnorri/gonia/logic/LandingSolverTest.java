@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+import java.awt.Color;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+
+/**
+ *
+ * @author tsnorri
+ */
+public class LandingSolverTest
+{
+	public LandingSolverTest()
+	{
+	}
+
+
+	@BeforeClass
+	public static void setUpClass() throws Exception
+	{
+	}
+
+
+	@AfterClass
+	public static void tearDownClass() throws Exception
+	{
+	}
+
+
+	@Before
+	public void setUp()
+	{
+	}
+
+
+	@After
+	public void tearDown()
+	{
+	}
+
+
+	private void fillRandomly(Random random, GameBoard gb, int rows, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			HexPoint point = HexPoint.createWithOffsets(random.nextInt(gb.getWidth()), random.nextInt(rows));
+			if (gb.isValidAndVacant(point))
+				gb.occupySpace(new HexPoint[] {point}, Color.green);
+		}
+	}
+
+
+	private void checkLandings(Random random, GameBoard gb)
+	{
+		LandingSolver solver = new LandingSolver(gb.getWidth());
+		Trajectory trajectory = new Trajectory();
+		for (int i = 0; i < 300; i++)
+		{
+			Tetromino.Type type = Tetromino.Type.values()[random.nextInt(Tetromino.Type.values().length)];
+			Trajectory.Type trajectoryType = Trajectory.Type.values()[random.nextInt(3)];
+			int orientation = random.nextInt(TetrominoShape.ORIENTATIONS);
+			int w = random.nextInt(gb.getWidth() + 6) - 3;
+			int h = random.nextInt(gb.getHeight());
+			if (!gb.canPlace(type, orientation, w, h))
+				continue;
+
+			// Step by step.
+			trajectory.setPreferredType(trajectoryType);
+			int expectedW = w;
+			int expectedH = h;
+			int nextW;
+			while (Trajectory.NO_SPACE != (nextW = trajectory.nextW(type, orientation, expectedW, expectedH, gb)))
+			{
+				expectedW = nextW;
+				expectedH--;
+			}
+
+			int location = solver.landingLocation(gb, trajectoryType, type, orientation, w, h);
+			String message = String.format("%s %s orientation %d from (%d, %d)", type, trajectoryType, orientation, w, h);
+			assertEquals(message, expectedW, HexPoint.packedHorizontalOffset(location));
+			assertEquals(message, expectedH, HexPoint.packedY(location));
+		}
+	}
+
+
+	@Test
+	public void testEmptyBoard()
+	{
+		Random random = new Random(10);
+		checkLandings(random, new ConcreteGameBoard(9, 40));
+		checkLandings(random, new ConcreteGameBoard(10, 300));
+	}
+
+
+	@Test
+	public void testNarrowBoard()
+	{
+		// The tetrominoes get stuck between the edges.
+		Random random = new Random(11);
+		for (int width = 1; width < 5; width++)
+			checkLandings(random, new ConcreteGameBoard(width, 60));
+	}
+
+
+	@Test
+	public void testRandomBoards()
+	{
+		Random random = new Random(12);
+		for (int i = 0; i < 20; i++)
+		{
+			GameBoard gb = new BitboardGameBoard(5 + random.nextInt(8), 20 + random.nextInt(100));
+			fillRandomly(random, gb, 1 + random.nextInt(15), 100);
+			checkLandings(random, gb);
+		}
+	}
+
+
+	@Test
+	public void testSharedChecks()
+	{
+		// The walks start from the same location below the highest occupied
+		// row, so they have locations in common that are checked only once.
+		final int[] checks = new int[1];
+		GameBoard gb = new ConcreteGameBoard(8, 40)
+		{
+			@Override
+			public boolean canPlace(Tetromino.Type type, int orientation, int w, int h)
+			{
+				checks[0]++;
+				return super.canPlace(type, orientation, w, h);
+			}
+		};
+		Random random = new Random(14);
+		fillRandomly(random, gb, 30, 12);
+
+		LandingSolver solver = new LandingSolver(gb.getWidth());
+		int[] locations = new int[Trajectory.Type.values().length];
+		int shared = 0;
+		int separate = 0;
+		int h = gb.getMaxColumnHeight();
+		for (Tetromino.Type type : Tetromino.Type.values())
+		{
+			for (int w = 0; w < gb.getWidth(); w++)
+			{
+				if (!gb.canPlace(type, 0, w, h))
+					continue;
+
+				checks[0] = 0;
+				solver.landingLocations(gb, type, 0, w, h, locations);
+				shared += checks[0];
+
+				for (Trajectory.Type trajectoryType : Trajectory.Type.values())
+				{
+					checks[0] = 0;
+					assertEquals(locations[trajectoryType.ordinal()], solver.landingLocation(gb, trajectoryType, type, 0, w, h));
+					separate += checks[0];
+				}
+			}
+		}
+		assertTrue(0 < shared);
+		assertTrue(shared < separate);
+	}
+
+
+	@Test
+	public void testDrop()
+	{
+		Random random = new Random(13);
+		for (int i = 0; i < 50; i++)
+		{
+			GameBoard gb = new ConcreteGameBoard(8, 30);
+			fillRandomly(random, gb, 6, 30);
+			GameBoard copy = gb.mutableCopy();
+			Tetromino.Type type = Tetromino.Type.values()[random.nextInt(Tetromino.Type.values().length)];
+			Trajectory trajectory = new Trajectory();
+			trajectory.setPreferredType(Trajectory.Type.values()[random.nextInt(3)]);
+
+			Tetromino dropped = Tetromino.tetrominoWithType(type);
+			Tetromino stepped = Tetromino.tetrominoWithType(type);
+			dropped.moveTo(4, 25);
+			stepped.moveTo(4, 25);
+
+			int distance = 0;
+			int lines;
+			while (-1 == (lines = stepped.dropOne(trajectory, copy)))
+				distance++;
+
+			assertEquals(Integer.valueOf(distance), dropped.drop(trajectory, gb).getValue0());
+			assertEquals(stepped.getW(), dropped.getW());
+			assertEquals(stepped.getH(), dropped.getH());
+			assertEquals(copy.stateHash(), gb.stateHash());
+			assertTrue(0 <= lines);
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+
+/**
+ *
+ * @author tsnorri
+ */
+public class PlacementEnumeratorTest
+{
+	public PlacementEnumeratorTest()
+	{
+	}
+
+
+	@BeforeClass
+	public static void setUpClass() throws Exception
+	{
+	}
+
+
+	@AfterClass
+	public static void tearDownClass() throws Exception
+	{
+	}
+
+
+	@Before
+	public void setUp()
+	{
+	}
+
+
+	@After
+	public void tearDown()
+	{
+	}
+
+
+	/**
+	 * The sorted packed points of a tetromino as a string.
+	 *
+	 * @param t The tetromino.
+	 * @return The string.
+	 */
+	private String pointsKey(Tetromino t)
+	{
+		int[] points = new int[t.getPoints().size()];
+		int i = 0;
+		for (HexPoint point : t.getPoints())
+		{
+			points[i] = point.pack();
+			i++;
+		}
+		Arrays.sort(points);
+		return Arrays.toString(points);
+	}
+
+
+	/**
+	 * Find the resting locations by moving Tetromino instances.
+	 *
+	 * @param gb The game board.
+	 * @param type The type of the tetromino.
+	 * @param trajectoryType The trajectory.
+	 * @param w The initial horizontal co-ordinate.
+	 * @param h The initial vertical co-ordinate.
+	 * @return The sorted packed points of each resting location as strings.
+	 */
+	private Set<String> expectedPlacements(GameBoard gb, Tetromino.Type type, Trajectory.Type trajectoryType, int w, int h)
+	{
+		Set<String> retval = new HashSet<String>();
+		Set<String> visited = new HashSet<String>();
+		LinkedList<int[]> queue = new LinkedList<int[]>();
+		Trajectory trajectory = new Trajectory();
+		trajectory.setPreferredType(trajectoryType);
+		queue.add(new int[] {0, w, h});
+		visited.add(Arrays.toString(queue.getFirst()));
+
+		while (!queue.isEmpty())
+		{
+			int[] state = queue.removeFirst();
+			for (int i = 0; i < 5; i++)
+			{
+				Tetromino t = Tetromino.tetrominoWithType(type);
+				t.orientation = state[0];
+				t.moveTo(state[1], state[2]);
+				switch (i)
+				{
+					case 0:
+						t.moveLeft(gb);
+						break;
+					case 1:
+						t.moveRight(gb);
+						break;
+					case 2:
+						t.rotateCW(gb);
+						break;
+					case 3:
+						t.rotateCCW(gb);
+						break;
+					case 4:
+						// Land on a copy so that the game board stays the same.
+						if (-1 != t.dropOne(trajectory, gb.mutableCopy()))
+						{
+							t.moveTo(state[1], state[2]);
+							retval.add(pointsKey(t));
+							continue;
+						}
+						break;
+				}
+
+				int[] next = {t.getOrientation(), t.getW(), t.getH()};
+				if (visited.add(Arrays.toString(next)))
+					queue.add(next);
+			}
+		}
+		return retval;
+	}
+
+
+	private void checkPlacements(GameBoard gb, Tetromino.Type type, Trajectory.Type trajectoryType, int w, int h)
+	{
+		PlacementEnumerator enumerator = new PlacementEnumerator();
+		List<Placement> placements = enumerator.enumerate(gb, type, trajectoryType, w, h);
+
+		Set<String> found = new HashSet<String>();
+		for (Placement placement : placements)
+		{
+			int[] points = placement.getOccupiedPoints();
+			assertTrue(found.add(Arrays.toString(points)));
+			assertEquals(h - placement.getH(), placement.getDropDistance());
+			assertEquals(type, placement.getType());
+
+			// The placement matches the state and rests on the game board.
+			Tetromino t = Tetromino.tetrominoWithType(type);
+			t.orientation = placement.getOrientation();
+			t.moveTo(placement.getW(), placement.getH());
+			assertEquals(Arrays.toString(points), pointsKey(t));
+			Trajectory trajectory = new Trajectory();
+			trajectory.setPreferredType(trajectoryType);
+			assertEquals(Trajectory.NO_SPACE, trajectory.nextW(type, t.getOrientation(), t.getW(), t.getH(), gb));
+
+			// Making the moves leads to the placement.
+			Tetromino moved = Tetromino.tetrominoWithType(type);
+			moved.moveTo(w, h);
+			for (PlacementEnumerator.Move move : enumerator.moves(placement))
+			{
+				switch (move)
+				{
+					case Left:
+						moved.moveLeft(gb);
+						break;
+					case Right:
+						moved.moveRight(gb);
+						break;
+					case RotateCW:
+						moved.rotateCW(gb);
+						break;
+					case RotateCCW:
+						moved.rotateCCW(gb);
+						break;
+					case Down:
+						assertEquals(-1, moved.dropOne(trajectory, gb));
+						break;
+				}
+			}
+			assertEquals(Arrays.toString(points), pointsKey(moved));
+
+			GameBoard copy = gb.mutableCopy();
+			HexPoint[] occupied = new HexPoint[points.length];
+			for (int i = 0; i < points.length; i++)
+				occupied[i] = HexPoint.unpack(points[i]);
+			assertEquals(copy.occupySpace(occupied, Color.red), placement.getLinesCleared());
+		}
+		assertEquals(expectedPlacements(gb, type, trajectoryType, w, h), found);
+	}
+
+
+	@Test
+	public void testEmptyBoard()
+	{
+		GameBoard gb = new ConcreteGameBoard(7, 10);
+		for (Tetromino.Type type : Tetromino.Type.values())
+		{
+			for (Trajectory.Type trajectoryType : Trajectory.Type.values())
+				checkPlacements(gb, type, trajectoryType, 3, 6);
+		}
+	}
+
+
+	@Test
+	public void testRandomBoards()
+	{
+		Random random = new Random(9);
+		for (int i = 0; i < 20; i++)
+		{
+			GameBoard gb = new BitboardGameBoard(8, 14);
+			List<HexPoint> points = new ArrayList<HexPoint>();
+			for (int j = 0; j < 30; j++)
+			{
+				HexPoint point = HexPoint.createWithOffsets(random.nextInt(8), random.nextInt(7));
+				if (!points.contains(point))
+					points.add(point);
+			}
+			gb.occupySpace(points.toArray(new HexPoint[points.size()]), Color.blue);
+
+			Tetromino.Type type = Tetromino.Type.values()[random.nextInt(Tetromino.Type.values().length)];
+			Trajectory.Type trajectoryType = Trajectory.Type.values()[random.nextInt(3)];
+			checkPlacements(gb, type, trajectoryType, 4, 10);
+		}
+	}
+
+
+	@Test
+	public void testLines()
+	{
+		// The I tetromino fills the gap in the lowest row.
+		GameBoard gb = new ConcreteGameBoard(6, 8);
+		gb.occupySpace(new HexPoint[] {
+			HexPoint.createWithOffsets(0, 0),
+			HexPoint.createWithOffsets(1, 0)
+		}, Color.red);
+
+		int lines = 0;
+		for (Placement placement : new PlacementEnumerator().enumerate(gb, Tetromino.Type.I, Trajectory.Type.Vertical, 2, 5))
+			lines = Math.max(lines, placement.getLinesCleared());
+		assertEquals(1, lines);
+
+		// No placements if the initial location is occupied.
+		assertTrue(new PlacementEnumerator().enumerate(gb, Tetromino.Type.I, Trajectory.Type.Vertical, 1, 0).isEmpty());
+	}
+
+
+	@Test
+	public void testTallBoard()
+	{
+		// The buffers cover the rows up to the initial one.
+		GameBoard gb = new ChunkedGameBoard(10, 100000);
+		gb.occupySpace(new HexPoint[] {
+			HexPoint.createWithOffsets(2, 0),
+			HexPoint.createWithOffsets(3, 1)
+		}, Color.red);
+		checkPlacements(gb, Tetromino.Type.L, Trajectory.Type.Vertical, 4, 6);
+		assertFalse(PlacementEnumerator.isSupported(10, Tetromino.Type.L, 100000 - 4));
+	}
+
+
+	@Test
+	public void testSizeLimit()
+	{
+		int width = AbstractGameBoard.MAX_WIDTH;
+		int height = AbstractGameBoard.MAX_HEIGHT - 1;
+		assertFalse(PlacementEnumerator.isSupported(width, Tetromino.Type.I, height - 4));
+
+		Exception exc = null;
+		try
+		{
+			new PlacementEnumerator().enumerate(new ChunkedGameBoard(width, height), Tetromino.Type.I, Trajectory.Type.Vertical, width / 2, height - 4);
+		}
+		catch (IllegalArgumentException e)
+		{
+			exc = e;
+		}
+		assertNotNull(exc);
+	}
+}
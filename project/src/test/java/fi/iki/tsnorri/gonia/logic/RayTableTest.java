@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+
+import java.awt.Color;
+import java.util.Collection;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+
+/**
+ *
+ * @author tsnorri
+ */
+public class RayTableTest
+{
+	public RayTableTest()
+	{
+	}
+
+
+	@BeforeClass
+	public static void setUpClass() throws Exception
+	{
+	}
+
+
+	@AfterClass
+	public static void tearDownClass() throws Exception
+	{
+	}
+
+
+	@Before
+	public void setUp()
+	{
+	}
+
+
+	@After
+	public void tearDown()
+	{
+	}
+
+
+	@Test
+	public void testRays()
+	{
+		RayTable table = new RayTable(5, 6);
+		int packed = HexPoint.packOffsets(2, 4);
+
+		// The rays end at the edges.
+		int[] left = table.ray(Trajectory.Type.DiagonalLeft, 4, packed);
+		int[] right = table.ray(Trajectory.Type.DiagonalRight, 4, packed);
+		int[] vertical = table.ray(Trajectory.Type.Vertical, 4, packed);
+		assertTrue(0 < left.length);
+		assertTrue(0 < right.length);
+		assertEquals(4, vertical.length);
+
+		int translation = HexPoint.packedOrthogonalTranslation(0, -1, false);
+		int current = packed;
+		for (int next : left)
+		{
+			current += translation;
+			assertEquals(current, next);
+		}
+
+		// Two steps on the vertical trajectory return to the same column.
+		assertEquals(HexPoint.packOffsets(2, 2), vertical[1]);
+		assertEquals(HexPoint.packOffsets(2, 0), vertical[3]);
+		assertEquals(0, table.ray(Trajectory.Type.Vertical, 4, HexPoint.packOffsets(5, 4)).length);
+	}
+
+
+	private static void checkRemainingPoints(Random random, Trajectory trajectory, GameBoard gb)
+	{
+		for (int j = 0; j < 40; j++)
+		{
+			HexPoint point = HexPoint.createWithOffsets(random.nextInt(gb.getWidth()), random.nextInt(8));
+			if (gb.isValidAndVacant(point))
+				gb.occupySpace(new HexPoint[] {point}, Color.green);
+		}
+
+		Tetromino tetromino = Tetromino.tetrominoWithType(Tetromino.Type.values()[random.nextInt(Tetromino.Type.values().length)]);
+		tetromino.moveTo(random.nextInt(gb.getWidth()), gb.getHeight() - 4);
+		if (!gb.canPlace(tetromino.getType(), tetromino.getOrientation(), tetromino.getW(), tetromino.getH()))
+			return;
+
+		trajectory.setPreferredType(Trajectory.Type.values()[random.nextInt(3)]);
+		Set<HexPoint> expected = new TreeSet<HexPoint>(new HexPoint.Comparator());
+		Collection<? extends HexPoint> points = tetromino.getPoints();
+		while (null != (points = trajectory.nextPoints(points, gb)))
+			expected.addAll(points);
+
+		Set<HexPoint> remaining = trajectory.remainingPoints(tetromino.getPoints(), gb);
+		if (expected.isEmpty())
+			assertNull(remaining);
+		else
+		{
+			assertEquals(expected.size(), remaining.size());
+			assertTrue(expected.containsAll(remaining));
+		}
+	}
+
+
+	@Test
+	public void testRemainingPoints()
+	{
+		// Compare with moving the points one step at a time.
+		Random random = new Random(21);
+		Trajectory trajectory = new Trajectory();
+		for (int i = 0; i < 200; i++)
+			checkRemainingPoints(random, trajectory, new ConcreteGameBoard(4 + random.nextInt(8), 20 + random.nextInt(20)));
+	}
+
+
+	@Test
+	public void testSizeLimit()
+	{
+		assertTrue(RayTable.isSupported(10, 22));
+		assertFalse(RayTable.isSupported(64, 300));
+		assertFalse(RayTable.isSupported(AbstractGameBoard.MAX_WIDTH, AbstractGameBoard.MAX_HEIGHT));
+
+		Exception exc = null;
+		try
+		{
+			new RayTable(64, 300);
+		}
+		catch (IllegalArgumentException e)
+		{
+			exc = e;
+		}
+		assertNotNull(exc);
+	}
+
+
+	@Test
+	public void testRemainingPointsWithoutTable()
+	{
+		// The points are moved one step at a time on large game boards.
+		Random random = new Random(22);
+		Trajectory trajectory = new Trajectory();
+		for (int i = 0; i < 10; i++)
+			checkRemainingPoints(random, trajectory, new BitboardGameBoard(64, 300));
+	}
+}
@@ -87,4 +87,35 @@ public class TetrominoSourceTest
 			assertTrue(names.contains(tetromino.getName()));
 		}
 	}
+
+
+	@Test
+	public void testRecycling()
+	{
+		Tetromino.Type[] seq = {Tetromino.Type.J, Tetromino.Type.L, Tetromino.Type.O};
+		SequentialTetrominoSource source = new SequentialTetrominoSource(seq);
+		source.createTetromino();
+		Tetromino first = source.getTetromino();
+		first.moveTo(3, 5);
+		first.rotateCW(new ConcreteGameBoard(10, 10));
+
+		// The current tetromino is not reused while it is current.
+		source.recycleTetromino(first);
+		source.createTetromino();
+		Tetromino second = source.getTetromino();
+		assertNotSame(first, second);
+
+		// A recycled tetromino is reset.
+		source.recycleTetromino(first);
+		source.createTetromino();
+		Tetromino third = source.getTetromino();
+		assertSame(first, third);
+		assertEquals(Tetromino.Type.O, third.getType());
+		assertEquals("O", third.getName());
+		assertEquals(TilePalette.colorForType(Tetromino.Type.O), third.getColor());
+		assertEquals(0, third.getOrientation());
+		assertEquals(0, third.getW());
+		assertEquals(0, third.getH());
+		assertEquals(Tetromino.tetrominoWithType(Tetromino.Type.O).getPoints(), third.getPoints());
+	}
 }
@@ -11,9 +11,15 @@ package fi.iki.tsnorri.gonia.logic;
 
 
 import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 import org.junit.*;
 
 
@@ -46,6 +52,20 @@ public class TetrominoTest
 		}
 
 
+		@Override
+		public boolean isValidAndVacant(int packed)
+		{
+			return true;
+		}
+
+
+		@Override
+		public boolean canPlace(Tetromino.Type type, int orientation, int w, int h)
+		{
+			return true;
+		}
+
+
 		@Override
 		public boolean isOccupied(HexPoint point)
 		{
@@ -53,6 +73,55 @@ public class TetrominoTest
 		}
 
 
+		@Override
+		public boolean isOccupied(int packed)
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public int getOccupiedCount(int v)
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public byte getTile(int packed)
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public byte getTile(HexPoint point)
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public int getColumnHeight(int h)
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public int getMaxColumnHeight()
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public int getSurfaceProfile(int h)
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
 		@Override
 		public Color colorForOccupiedPoint(HexPoint point)
 		{
@@ -88,11 +157,60 @@ public class TetrominoTest
 		}
 
 
+		@Override
+		public long version()
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public void addListener(GameBoardListener listener)
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public void removeListener(GameBoardListener listener)
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public long stateHash()
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public GameBoard snapshot()
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
+		@Override
+		public GameBoard mutableCopy()
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+
+
 		@Override
 		public int occupySpace(HexPoint[] points, Color color)
 		{
 			throw new UnsupportedOperationException("Not supported yet.");
 		}
+
+
+		@Override
+		public int occupySpace(HexPoint[] points, byte tile)
+		{
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
 	}
 
 	
@@ -331,4 +449,218 @@ public class TetrominoTest
 		Collection<HexPoint> expectedPoints = Arrays.asList(expected);
 		this.checkPoints(expectedPoints, currentPoints);
 	}
+
+
+	@Test
+	public void testLocation()
+	{
+		Random random = new Random(4);
+		Trajectory trajectory = new Trajectory();
+		for (Tetromino.Type type : Tetromino.Type.values())
+		{
+			GameBoard gb = new ConcreteGameBoard(12, 30);
+			Tetromino t = Tetromino.tetrominoWithType(type);
+			t.moveTo(6, 26);
+			for (int i = 0; i < 25; i++)
+			{
+				switch (random.nextInt(5))
+				{
+					case 0:
+						t.moveLeft(gb);
+						break;
+					case 1:
+						t.moveRight(gb);
+						break;
+					case 2:
+						t.rotateCW(gb);
+						break;
+					case 3:
+						t.rotateCCW(gb);
+						break;
+					case 4:
+						trajectory.setPreferredType(Trajectory.Type.values()[random.nextInt(3)]);
+						break;
+				}
+
+				if (-1 != t.dropOne(trajectory, gb))
+					break;
+
+				// The points must match the state.
+				TetrominoShape shape = TetrominoShape.valueOf(type, t.getOrientation(), t.getH());
+				List<HexPoint> expected = new ArrayList<HexPoint>();
+				for (int j = 0; j < shape.getPointCount(); j++)
+					expected.add(HexPoint.createWithOffsets(t.getW() + shape.getHorizontalOffset(j), t.getH() + shape.getVerticalOffset(j)));
+				this.checkPoints(expected, t.getPoints());
+			}
+		}
+	}
+
+
+	/**
+	 * The points of a shape translated so that the leftmost point is at zero.
+	 *
+	 * @param shape The shape.
+	 * @return The packed points.
+	 */
+	private HexPointSet normalizedPoints(TetrominoShape shape)
+	{
+		HexPointSet retval = new HexPointSet();
+		for (int i = 0; i < shape.getPointCount(); i++)
+			retval.add(HexPoint.packOffsets(shape.getHorizontalOffset(i) - shape.getMinHorizontalOffset(), shape.getVerticalOffset(i)));
+		return retval;
+	}
+
+
+	@Test
+	public void testOrientationCount()
+	{
+		for (Tetromino.Type type : Tetromino.Type.values())
+		{
+			int count = TetrominoShape.getOrientationCount(type);
+			assertEquals(0, TetrominoShape.ORIENTATIONS % count);
+			for (int h = 0; h < 2; h++)
+			{
+				for (int i = 0; i < TetrominoShape.ORIENTATIONS; i++)
+				{
+					HexPointSet points = normalizedPoints(TetrominoShape.valueOf(type, i, h));
+					for (int j = 0; j < i; j++)
+					{
+						HexPointSet other = normalizedPoints(TetrominoShape.valueOf(type, j, h));
+						assertEquals(type.name(), 0 == (i - j) % count, points.equals(other));
+					}
+				}
+			}
+		}
+
+		assertEquals(3, TetrominoShape.getOrientationCount(Tetromino.Type.I));
+		assertEquals(3, TetrominoShape.getOrientationCount(Tetromino.Type.O));
+		assertEquals(6, TetrominoShape.getOrientationCount(Tetromino.Type.C));
+	}
+
+
+	/**
+	 * Move a tetromino randomly without letting it land.
+	 *
+	 * @param t The tetromino.
+	 * @param gb The game board.
+	 * @param trajectory The trajectory.
+	 * @param random The random number generator.
+	 * @param count The number of moves.
+	 */
+	private void moveRandomly(Tetromino t, GameBoard gb, Trajectory trajectory, Random random, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			switch (random.nextInt(5))
+			{
+				case 0:
+					t.moveLeft(gb);
+					break;
+				case 1:
+					t.moveRight(gb);
+					break;
+				case 2:
+					t.rotateCW(gb);
+					break;
+				case 3:
+					t.rotateCCW(gb);
+					break;
+				case 4:
+					if (t.getH() < 4)
+						t.moveTo(5, gb.getHeight() - 4);
+					else
+						assertEquals(-1, t.dropOne(trajectory, gb));
+					break;
+			}
+		}
+	}
+
+
+	@Test
+	public void testAllocationFree()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+		GameBoard gb = new ConcreteGameBoard(12, 20);
+		gb.occupySpace(new HexPoint[] {HexPoint.createWithOffsets(5, 1), HexPoint.createWithOffsets(6, 2)}, Color.red);
+		Trajectory trajectory = new Trajectory();
+		Random random = new Random(8);
+		long id = Thread.currentThread().getId();
+
+		for (Tetromino.Type type : Tetromino.Type.values())
+		{
+			Tetromino t = Tetromino.tetrominoWithType(type);
+			t.moveTo(5, 10);
+			trajectory.setPreferredType(Trajectory.Type.values()[type.ordinal() % 3]);
+
+			// Let the JIT compiler settle before measuring.
+			moveRandomly(t, gb, trajectory, random, 20000);
+
+			// Measuring may allocate by itself.
+			long start = threadBean.getThreadAllocatedBytes(id);
+			long overhead = threadBean.getThreadAllocatedBytes(id) - start;
+
+			// The virtual machine may occasionally allocate on its own, e.g.
+			// when recompiling, so take the best of a few runs.
+			long allocated = Long.MAX_VALUE;
+			for (int i = 0; i < 3; i++)
+			{
+				start = threadBean.getThreadAllocatedBytes(id);
+				moveRandomly(t, gb, trajectory, random, 1000);
+				allocated = Math.min(allocated, threadBean.getThreadAllocatedBytes(id) - start);
+			}
+			assertEquals(type.name(), overhead, allocated);
+		}
+	}
+
+
+	@Test
+	public void testPointConstructor()
+	{
+		GameBoard gb = new StubGameBoard();
+		for (Tetromino.Type type : Tetromino.Type.values())
+		{
+			Tetromino expected = Tetromino.tetrominoWithType(type);
+			expected.moveTo(3, 5);
+			for (int i = 0; i < TetrominoShape.ORIENTATIONS; i++)
+			{
+				HexPoint[] points = expected.getPoints().toArray(new HexPoint[0]);
+				Tetromino t = new Tetromino("Test", Color.red, points);
+				assertEquals(type.name(), type, t.getType());
+				assertEquals(expected.getH(), t.getH());
+				assertEquals("Test", t.getName());
+				assertEquals(Color.red, t.getColor());
+				assertEquals(TilePalette.indexForColor(Color.red), t.getTile());
+				this.checkPoints(expected.getPoints(), t.getPoints());
+				expected.rotateCW(gb);
+			}
+		}
+
+		// The base points are placed at the origin.
+		for (Tetromino.Type type : Tetromino.Type.values())
+		{
+			Tetromino t = new Tetromino(type.name(), Color.red, TetrominoShape.basePoints(type));
+			assertEquals(type, t.getType());
+			assertEquals(0, t.getOrientation());
+			assertEquals(0, t.getW());
+			assertEquals(TetrominoShape.getOriginOffset(type), t.getH());
+		}
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPointConstructorWithoutPoints()
+	{
+		new Tetromino("Test", Color.red);
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPointConstructorWithUnknownShape()
+	{
+		new Tetromino("Test", Color.red, new HexPoint(0, 0, 0), new HexPoint(2, 0, -2));
+	}
 }
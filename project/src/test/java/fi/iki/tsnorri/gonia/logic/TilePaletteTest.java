@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2012, 2015 Tuukka Norri, tsnorri@iki.fi.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.
+ *
+ * This software is distributed on an "AS IS" basis, WITHOUT WARRANTY OF ANY
+ * KIND, either express or implied.
+ */
+package fi.iki.tsnorri.gonia.logic;
+
+import java.awt.Color;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author tsnorri
+ */
+public class TilePaletteTest
+{
+	public TilePaletteTest()
+	{
+	}
+
+
+	@BeforeClass
+	public static void setUpClass() throws Exception
+	{
+	}
+
+
+	@AfterClass
+	public static void tearDownClass() throws Exception
+	{
+	}
+
+
+	@Before
+	public void setUp()
+	{
+	}
+
+
+	@After
+	public void tearDown()
+	{
+	}
+
+
+	@Test
+	public void testTypes()
+	{
+		Tetromino.Type[] types = Tetromino.Type.values();
+		for (int i = 0; i < types.length; i++)
+		{
+			byte index = TilePalette.indexForType(types[i]);
+			assertEquals(1 + i, index);
+			assertEquals(TilePalette.colorForType(types[i]), TilePalette.colorForIndex(index));
+			assertEquals(index, TilePalette.indexForColor(TilePalette.colorForType(types[i])));
+			assertEquals(index, Tetromino.tetrominoWithType(types[i]).getTile());
+		}
+	}
+
+
+	@Test
+	public void testRegistration()
+	{
+		assertNull(TilePalette.colorForIndex(TilePalette.EMPTY));
+
+		Color color = new Color(1, 2, 3);
+		byte index = TilePalette.indexForColor(color);
+		assertTrue(TilePalette.EMPTY != index);
+		assertEquals(index, TilePalette.indexForColor(new Color(1, 2, 3)));
+		assertEquals(color, TilePalette.colorForIndex(index));
+	}
+
+
+	@Test
+	public void testBoardTiles()
+	{
+		GameBoard gb = new ConcreteGameBoard(3, 3);
+		HexPoint point = HexPoint.createWithOffsets(1, 1);
+		byte index = TilePalette.indexForType(Tetromino.Type.L);
+		gb.occupySpace(new HexPoint[] {point}, index);
+		assertEquals(index, gb.getTile(point));
+		assertEquals(TilePalette.colorForType(Tetromino.Type.L), gb.colorForOccupiedPoint(point));
+		assertEquals(TilePalette.EMPTY, gb.getTile(HexPoint.createWithOffsets(0, 1)));
+		assertEquals(TilePalette.EMPTY, gb.getTile(HexPoint.createWithOffsets(5, 1)));
+	}
+}
@@ -14,7 +14,9 @@ import java.awt.Color;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import org.junit.*;
 
@@ -339,4 +341,58 @@ public class TrajectoryTest
 		
 		remaining(Trajectory.Type.Vertical, initialPoints, expectedPoints, gb);
 	}
+	
+	
+	@Test
+	public void testNextPackedPoints()
+	{
+		// Compare with moving the tetromino.
+		Random random = new Random(23);
+		Trajectory trajectory = new Trajectory();
+		int[] points = new int[4];
+		int[] nextPoints = new int[4];
+		for (int i = 0; i < 500; i++)
+		{
+			GameBoard gb = new ConcreteGameBoard(8, 12);
+			for (int j = 0; j < 20; j++)
+			{
+				HexPoint point = HexPoint.createWithOffsets(random.nextInt(8), random.nextInt(6));
+				if (gb.isValidAndVacant(point))
+					gb.occupySpace(new HexPoint[] {point}, Color.yellow);
+			}
+
+			Tetromino tetromino = Tetromino.tetrominoWithType(Tetromino.Type.values()[random.nextInt(Tetromino.Type.values().length)]);
+			tetromino.moveTo(random.nextInt(8), 1 + random.nextInt(8));
+			if (!gb.canPlace(tetromino.getType(), tetromino.getOrientation(), tetromino.getW(), tetromino.getH()))
+				continue;
+
+			trajectory.setPreferredType(Trajectory.Type.values()[random.nextInt(3)]);
+			int count = 0;
+			for (HexPoint point : tetromino.getPoints())
+			{
+				points[count] = point.pack();
+				count++;
+			}
+
+			Arrays.fill(nextPoints, 0);
+			int translation = trajectory.nextPoints(points, count, nextPoints, gb);
+			int nextW = trajectory.nextW(tetromino.getType(), tetromino.getOrientation(), tetromino.getW(), tetromino.getH(), gb);
+			if (Trajectory.NO_SPACE == nextW)
+			{
+				assertEquals(Trajectory.NO_SPACE, translation);
+				assertEquals(0, nextPoints[0]);
+			}
+			else
+			{
+				tetromino.moveTo(nextW, tetromino.getH() - 1);
+				int j = 0;
+				for (HexPoint point : tetromino.getPoints())
+				{
+					assertEquals(point.pack(), nextPoints[j]);
+					assertEquals(points[j] + translation, nextPoints[j]);
+					j++;
+				}
+			}
+		}
+	}
 }